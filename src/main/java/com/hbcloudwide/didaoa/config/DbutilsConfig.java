@@ -1,19 +1,103 @@
 package com.hbcloudwide.didaoa.config;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import javax.sql.DataSource;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 
 import com.alibaba.druid.pool.DruidDataSource;
 import com.hbcloudwide.didaoa.dao.DbUtilsTemplate;
+import com.hbcloudwide.didaoa.dao.LocalQueryCache;
+import com.hbcloudwide.didaoa.dao.RedisQueryCache;
+import com.hbcloudwide.didaoa.dao.ReplicaRouter;
+import com.hbcloudwide.didaoa.dao.SqlMetrics;
+import com.hbcloudwide.didaoa.dao.StatementCacheTuner;
 
 @Configuration
 public class DbutilsConfig {
 	@Autowired
     private DruidConfig druidConfig;
 
+	@Autowired(required = false)
+	private RedisTemplate<String, String> redisTemplate;
+
+	/**
+	 * 自动调整时每连接最少缓存的预编译语句数
+	 */
+	private static final int STATEMENT_CACHE_MIN_SIZE = 10;
+
+	/**
+	 * DbUtilsTemplate异步接口的线程池，大小与连接池一致
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService dbutilsAsyncExecutor() {
+		return DbUtilsTemplate.newAsyncExecutor(druidConfig.getMaxActive());
+	}
+
+	/**
+	 * 按语句指纹统计的SQL指标，通过 /api/sql-metrics 查看
+	 */
+	@Bean
+	public SqlMetrics sqlMetrics() {
+		return new SqlMetrics();
+	}
+
+	/**
+	 * 主库的事务管理器，@Transactional 和 DbUtilsTemplate.inTransaction 共用
+	 */
+	@Bean
+	public DataSourceTransactionManager transactionManager() throws Exception{
+		return new DataSourceTransactionManager(druidConfig.mysqlDataSource());
+	}
+
 	@Bean
 	public DbUtilsTemplate dbUtilsTemplate() throws Exception{
-		return new DbUtilsTemplate(druidConfig.mysqlDataSource());
+		DbUtilsTemplate dbUtilsTemplate = new DbUtilsTemplate(druidConfig.mysqlDataSource());
+		ReplicaRouter router = replicaRouter();
+		dbUtilsTemplate.setAsyncExecutor(dbutilsAsyncExecutor());
+		dbUtilsTemplate.setReplicaRouter(router);
+		dbUtilsTemplate.setReplicaLagMillis(druidConfig.getReplicaLagMillis());
+		dbUtilsTemplate.setSqlMetrics(sqlMetrics());
+		dbUtilsTemplate.setTransactionManager(transactionManager());
+		dbUtilsTemplate.setCoalesceReads(druidConfig.isCoalesceReads());
+		dbUtilsTemplate.setBatchTargetMillis(druidConfig.getBatchTargetMillis());
+		if (druidConfig.isPoolPreparedStatements() && druidConfig.getStatementCacheMaxSize() > 0) {
+			List<DataSource> pools = new ArrayList<DataSource>();
+			pools.add(druidConfig.mysqlDataSource());
+			for (ReplicaRouter.Replica replica : router.getReplicas()) {
+				pools.add(replica.getDataSource());
+			}
+			int maxSize = Math.max(druidConfig.getStatementCacheMaxSize(), druidConfig.getMaxPoolPreparedStatementPerConnectionSize());
+			dbUtilsTemplate.setStatementCacheTuner(new StatementCacheTuner(pools,
+					Math.min(STATEMENT_CACHE_MIN_SIZE, maxSize), maxSize, StatementCacheTuner.DEFAULT_WINDOW_MILLIS));
+		}
+		if (druidConfig.getQueryCacheRedisTtlSeconds() > 0 && redisTemplate != null) {
+			dbUtilsTemplate.setQueryCache(new RedisQueryCache(redisTemplate, "dbutils:qc:",
+					druidConfig.getQueryCacheRedisTtlSeconds(), 1024 * 1024));
+		} else if (druidConfig.getQueryCacheMaxEntries() > 0) {
+			dbUtilsTemplate.setQueryCache(new LocalQueryCache(druidConfig.getQueryCacheMaxEntries(),
+					druidConfig.getQueryCacheMaxMegabytes() * 1024L * 1024L));
+		}
+		return dbUtilsTemplate;
+	}
+
+	/**
+	 * 只读从库路由，未配置 spring.datasource.replicas 时为空，所有读写都走主库
+	 * 从库连接池不是单独的bean，随路由在应用停止时关闭
+	 */
+	@Bean(destroyMethod = "close")
+	public ReplicaRouter replicaRouter() throws Exception{
+		ReplicaRouter router = new ReplicaRouter(ReplicaRouter.Strategy.parse(druidConfig.getReplicaLoadBalance()));
+		for (DruidConfig.Replica replica : druidConfig.getReplicas()) {
+			router.addReplica(druidConfig.replicaDataSource(replica), replica.getWeight());
+		}
+		return router;
 	}
 }
@@ -1,10 +1,17 @@
 package com.hbcloudwide.didaoa.config;
 
 import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.wall.WallConfig;
+import com.alibaba.druid.wall.WallFilter;
+import com.alibaba.druid.wall.spi.MySqlWallProvider;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
 
 
 
@@ -46,6 +53,58 @@ public class DruidConfig {
 
     private String filters;
 
+    /**
+     * wall防火墙是否放行一次执行多条语句，默认不放行以拦截多语句注入
+     * 只有使用 DbUtilsTemplate.executeBatch 时才需要显式开启（连接串也须带 allowMultiQueries=true）
+     */
+    private boolean multiStatementAllow;
+
+    /**
+     * 只读从库，连接池参数与主库相同
+     */
+    private List<Replica> replicas = new ArrayList<Replica>();
+
+    /**
+     * 从库负载均衡策略：round-robin（加权轮询）或 least-active（最少进行中请求）
+     */
+    private String replicaLoadBalance = "round-robin";
+
+    /**
+     * 从库复制延迟的估计（毫秒），表在这段时间内被写过时从库读到的结果不写入查询缓存
+     */
+    private long replicaLagMillis = 1000;
+
+    /**
+     * 是否合并并发的相同查询（同一sql和参数只访问一次数据库，结果共享）
+     */
+    private boolean coalesceReads;
+
+    /**
+     * 进程内查询结果缓存的最大条目数，0表示不缓存
+     */
+    private int queryCacheMaxEntries;
+
+    /**
+     * 进程内查询结果缓存估算的最大内存占用（MB）
+     */
+    private int queryCacheMaxMegabytes = 64;
+
+    /**
+     * Redis查询结果缓存的过期时间（秒），大于0时使用Redis缓存（多节点共享）代替进程内缓存
+     */
+    private long queryCacheRedisTtlSeconds;
+
+    /**
+     * 批量写入每块的目标耗时（毫秒），大于0时按耗时自动调整块大小，0表示固定块大小
+     */
+    private long batchTargetMillis;
+
+    /**
+     * 开启PSCache时，按实际使用的不同sql个数自动调整的每连接缓存语句数上限，
+     * maxPoolPreparedStatementPerConnectionSize 为初始值；0表示不自动调整
+     */
+    private int statementCacheMaxSize = 256;
+
     public DruidConfig() {
     }
 
@@ -76,11 +135,31 @@ public class DruidConfig {
         this.filters = filters;
     }
 
+    /**
+     * 主库数据源，注册为Bean使事务管理器和 DbUtilsTemplate 使用同一个实例
+     */
+    @Bean
+    @Primary
     public DataSource mysqlDataSource() throws Exception{
+        return createDataSource(this.url, this.username, this.password);
+    }
+
+    /**
+     * 按配置创建只读从库的数据源，用户名和密码未配置时沿用主库的
+     * @param replica 从库配置
+     * @return 数据源
+     */
+    public DataSource replicaDataSource(Replica replica) throws Exception{
+        return createDataSource(replica.getUrl(),
+                replica.getUsername() != null ? replica.getUsername() : this.username,
+                replica.getPassword() != null ? replica.getPassword() : this.password);
+    }
+
+    private DataSource createDataSource(String url, String username, String password) throws Exception{
         DruidDataSource druidDataSource = new DruidDataSource();
-        druidDataSource.setUrl(this.url);
-        druidDataSource.setUsername(this.username);
-        druidDataSource.setPassword(this.password);
+        druidDataSource.setUrl(url);
+        druidDataSource.setUsername(username);
+        druidDataSource.setPassword(password);
         druidDataSource.setDriverClassName(this.driverClassName);
         druidDataSource.setInitialSize(this.initialSize);
         druidDataSource.setMaxActive(this.maxActive);
@@ -98,7 +177,8 @@ public class DruidConfig {
 
         try {
             if(null != druidDataSource) {
-                druidDataSource.setFilters("wall,stat");
+                druidDataSource.setFilters("stat");
+                druidDataSource.getProxyFilters().add(wallFilter());
                 druidDataSource.setUseGlobalDataSourceStat(true);
                 druidDataSource.init();
             }
@@ -110,6 +190,15 @@ public class DruidConfig {
         return druidDataSource;
     }
 
+    private WallFilter wallFilter() {
+        WallConfig wallConfig = new WallConfig(MySqlWallProvider.DEFAULT_CONFIG_DIR);
+        wallConfig.setMultiStatementAllow(this.multiStatementAllow);
+        WallFilter wallFilter = new WallFilter();
+        wallFilter.setDbType("mysql");
+        wallFilter.setConfig(wallConfig);
+        return wallFilter;
+    }
+
     public String getUrl() {
         return url;
     }
@@ -245,4 +334,130 @@ public class DruidConfig {
     public void setFilters(String filters) {
         this.filters = filters;
     }
+
+    public boolean isMultiStatementAllow() {
+        return multiStatementAllow;
+    }
+
+    public void setMultiStatementAllow(boolean multiStatementAllow) {
+        this.multiStatementAllow = multiStatementAllow;
+    }
+
+    public boolean isCoalesceReads() {
+        return coalesceReads;
+    }
+
+    public void setCoalesceReads(boolean coalesceReads) {
+        this.coalesceReads = coalesceReads;
+    }
+
+    public int getStatementCacheMaxSize() {
+        return statementCacheMaxSize;
+    }
+
+    public void setStatementCacheMaxSize(int statementCacheMaxSize) {
+        this.statementCacheMaxSize = statementCacheMaxSize;
+    }
+
+    public long getBatchTargetMillis() {
+        return batchTargetMillis;
+    }
+
+    public void setBatchTargetMillis(long batchTargetMillis) {
+        this.batchTargetMillis = batchTargetMillis;
+    }
+
+    public int getQueryCacheMaxEntries() {
+        return queryCacheMaxEntries;
+    }
+
+    public void setQueryCacheMaxEntries(int queryCacheMaxEntries) {
+        this.queryCacheMaxEntries = queryCacheMaxEntries;
+    }
+
+    public int getQueryCacheMaxMegabytes() {
+        return queryCacheMaxMegabytes;
+    }
+
+    public void setQueryCacheMaxMegabytes(int queryCacheMaxMegabytes) {
+        this.queryCacheMaxMegabytes = queryCacheMaxMegabytes;
+    }
+
+    public long getQueryCacheRedisTtlSeconds() {
+        return queryCacheRedisTtlSeconds;
+    }
+
+    public void setQueryCacheRedisTtlSeconds(long queryCacheRedisTtlSeconds) {
+        this.queryCacheRedisTtlSeconds = queryCacheRedisTtlSeconds;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(List<Replica> replicas) {
+        this.replicas = replicas;
+    }
+
+    public String getReplicaLoadBalance() {
+        return replicaLoadBalance;
+    }
+
+    public void setReplicaLoadBalance(String replicaLoadBalance) {
+        this.replicaLoadBalance = replicaLoadBalance;
+    }
+
+    public long getReplicaLagMillis() {
+        return replicaLagMillis;
+    }
+
+    public void setReplicaLagMillis(long replicaLagMillis) {
+        this.replicaLagMillis = replicaLagMillis;
+    }
+
+    /**
+     * 只读从库配置
+     */
+    public static class Replica {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private int weight = 1;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public void setWeight(int weight) {
+            this.weight = weight;
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package com.hbcloudwide.didaoa.controller.restApi;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.hbcloudwide.didaoa.dao.DbUtilsTemplate;
+import com.hbcloudwide.didaoa.dao.QueryCache;
+import com.hbcloudwide.didaoa.dao.SqlMetrics;
+import com.hbcloudwide.didaoa.dao.StatementCacheTuner;
+
+/**
+ * DbUtilsTemplate 的SQL指标
+ */
+@RestController
+@RequestMapping("/api")
+public class SqlMetricsApi {
+
+    @Autowired
+    private SqlMetrics sqlMetrics;
+
+    @Autowired
+    private DbUtilsTemplate dbUtilsTemplate;
+
+    /**
+     * 按语句指纹的执行统计，按总执行耗时降序，耗时单位为微秒
+     * @return
+     */
+    @RequestMapping(value = "/sql-metrics", method = RequestMethod.GET)
+    public List<Map<String, Object>> metrics() {
+        return sqlMetrics.snapshot();
+    }
+
+    /**
+     * 查询结果缓存的命中率等统计，未开启缓存时为空
+     * @return
+     */
+    @RequestMapping(value = "/sql-metrics/cache", method = RequestMethod.GET)
+    public Map<String, Object> cache() {
+        QueryCache cache = dbUtilsTemplate.getQueryCache();
+        return cache == null ? Collections.<String, Object>emptyMap() : cache.stats();
+    }
+
+    /**
+     * 批量写入自适应分块的当前块大小和吞吐量，按语句指纹
+     * @return
+     */
+    @RequestMapping(value = "/sql-metrics/batch", method = RequestMethod.GET)
+    public Map<String, Map<String, Object>> batch() {
+        return dbUtilsTemplate.getBatchSizerStats();
+    }
+
+    /**
+     * 预编译语句缓存（Druid PSCache）的命中率、淘汰次数和自动调整后的大小，未开启时为空
+     * @return
+     */
+    @RequestMapping(value = "/sql-metrics/statements", method = RequestMethod.GET)
+    public Map<String, Object> statements() {
+        StatementCacheTuner tuner = dbUtilsTemplate.getStatementCacheTuner();
+        return tuner == null ? Collections.<String, Object>emptyMap() : tuner.stats();
+    }
+
+    /**
+     * 清空统计
+     */
+    @RequestMapping(value = "/sql-metrics", method = RequestMethod.DELETE)
+    public void reset() {
+        sqlMetrics.reset();
+    }
+}
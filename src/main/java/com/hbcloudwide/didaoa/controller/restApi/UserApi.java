@@ -9,8 +9,10 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.hbcloudwide.didaoa.dao.Page;
 import com.hbcloudwide.didaoa.domain.User;
 import com.hbcloudwide.didaoa.service.UserService;
 
@@ -26,6 +28,11 @@ public class UserApi {
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    /**
+     * 分页接口每页最多条数
+     */
+    private static final int MAX_PAGE_SIZE = 500;
+
     @Autowired
     private UserService testService;
 
@@ -85,4 +92,16 @@ public class UserApi {
     public List<User> products() {
         return testService.getAllUser();
     }
+
+    /**
+     * 分页获取商品，按id翻页
+     * @param after 上一页返回的nextKey，第一页不传
+     * @param size 每页条数
+     * @return
+     */
+    @RequestMapping(value = "/tests/page", method = RequestMethod.GET)
+    public Page<User> productPage(@RequestParam(value = "after", required = false) Long after,
+                                  @RequestParam(value = "size", defaultValue = "20") int size) {
+        return testService.getUserPage(after, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+    }
 }
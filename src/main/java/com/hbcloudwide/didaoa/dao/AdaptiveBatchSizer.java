@@ -0,0 +1,112 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 批量写入的块大小控制器（AIMD）：每块执行后按耗时调整下一块的行数，
+ * 耗时低于目标时加法增大（每次加固定的 increment 行），超过目标时乘法减半，使每块耗时稳定在目标附近
+ * 行宽、服务端负载和网络变化时自动适应，不需要手工调整 batchChunkSize
+ * 一个控制器只应用于一个批量写入任务，多个任务并发共用时各自的耗时会混在一起；任务之间可用 nextSize 传递学到的块大小
+ */
+public class AdaptiveBatchSizer {
+
+    /** 吞吐量指数移动平均的权重 */
+    private static final double EWMA_WEIGHT = 0.2;
+
+    private final long targetNanos;
+    private final int minSize;
+    private final int maxSize;
+    private final int increment;
+
+    private int size;
+    private long chunks;
+    private long rows;
+    private long totalNanos;
+    private long lastNanos;
+    private double rowsPerSecond;
+    private long increases;
+    private long decreases;
+
+    /**
+     * 每次增大 minSize 行
+     * @param targetMillis 每块的目标耗时（毫秒）
+     * @param initialSize 初始块大小
+     * @param minSize 最小块大小
+     * @param maxSize 最大块大小
+     */
+    public AdaptiveBatchSizer(long targetMillis, int initialSize, int minSize, int maxSize) {
+        this(targetMillis, initialSize, minSize, maxSize, minSize);
+    }
+
+    /**
+     * @param targetMillis 每块的目标耗时（毫秒）
+     * @param initialSize 初始块大小
+     * @param minSize 最小块大小
+     * @param maxSize 最大块大小
+     * @param increment 耗时低于目标时每次增大的行数
+     */
+    public AdaptiveBatchSizer(long targetMillis, int initialSize, int minSize, int maxSize, int increment) {
+        if (targetMillis < 1 || minSize < 1 || maxSize < minSize || increment < 1) {
+            throw new IllegalArgumentException("Invalid target " + targetMillis + "ms, size range " + minSize + "-" + maxSize
+                    + " or increment " + increment);
+        }
+        this.targetNanos = targetMillis * 1000000L;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.increment = increment;
+        this.size = Math.max(minSize, Math.min(maxSize, initialSize));
+    }
+
+    /**
+     * @return 下一块的行数
+     */
+    public synchronized int nextSize() {
+        return size;
+    }
+
+    /**
+     * 记录一块的执行结果并调整块大小
+     * @param chunkRows 该块的行数
+     * @param nanos 该块的耗时（纳秒），含提交
+     */
+    public synchronized void record(int chunkRows, long nanos) {
+        chunks++;
+        rows += chunkRows;
+        totalNanos += nanos;
+        lastNanos = nanos;
+        double throughput = nanos <= 0 ? 0 : chunkRows * 1e9 / nanos;
+        rowsPerSecond = chunks == 1 ? throughput : rowsPerSecond + EWMA_WEIGHT * (throughput - rowsPerSecond);
+        if (nanos > targetNanos) {
+            int decreased = Math.max(minSize, size / 2);
+            if (decreased < size) {
+                size = decreased;
+                decreases++;
+            }
+        } else if (chunkRows >= size) {
+            // 尾块不满时耗时偏低，不据此增大
+            int increased = Math.min(maxSize, size + increment);
+            if (increased > size) {
+                size = increased;
+                increases++;
+            }
+        }
+    }
+
+    /**
+     * @return 统计信息：当前块大小、块数、行数、最近一块耗时（毫秒）、吞吐量（行/秒，指数移动平均）、增减次数
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("size", size);
+        map.put("targetMillis", targetNanos / 1000000L);
+        map.put("chunks", chunks);
+        map.put("rows", rows);
+        map.put("lastMillis", lastNanos / 1000000d);
+        map.put("avgMillis", chunks == 0 ? 0d : totalNanos / 1000000d / chunks);
+        map.put("rowsPerSecond", Math.round(rowsPerSecond));
+        map.put("increases", increases);
+        map.put("decreases", decreases);
+        return map;
+    }
+}
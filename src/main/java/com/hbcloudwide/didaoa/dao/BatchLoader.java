@@ -0,0 +1,194 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.hbcloudwide.didaoa.utils.SqlUtil;
+
+/**
+ * 按主键批量加载（DataLoader 模式）：调用方逐个请求主键，加载器在一个短时间窗口内收集主键，
+ * 窗口到期或攒满 maxBatchSize 个后用一条 IN 查询取回，再按主键分发给各个调用方；同一批次中重复的主键只查一次
+ * 用于消除循环中逐条 findFirst 的 N+1 查询
+ * <code>
+ * BatchLoader&lt;Long, User&gt; loader = dbUtilsTemplate.batchLoader(User.class, "SELECT * FROM user WHERE id IN (?)", User::getId);
+ * CompletableFuture&lt;User&gt; user = loader.load(id);
+ * </code>
+ * 主键类型须与 keyOf 返回的类型一致（如都为Long），否则对应不上
+ * 模板销毁（Spring容器关闭）时已收集的主键照常查询，之后的请求以 RejectedExecutionException 异常完成，见 {@link DbUtilsTemplate#destroy()}
+ */
+public class BatchLoader<K, V> {
+
+    /** 默认的批次时间窗口（毫秒） */
+    public static final long DEFAULT_WINDOW_MILLIS = 2;
+
+    /** 默认每批最多的主键数 */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+    /** 执行批次查询的线程数 */
+    private static final int WORKER_THREADS = 4;
+
+    /** 排队等待查询的批次数上限，超出时该批次的请求异常完成 */
+    private static final int WORKER_QUEUE_SIZE = 1024;
+
+    private final DbUtilsTemplate template;
+    /** 定时线程和工作线程池由模板持有，同一模板的所有批量加载器共用，模板销毁时关闭 */
+    private final ScheduledExecutorService timer;
+    private final ExecutorService workers;
+    private final Class<V> entityClass;
+    private final String sql;
+    private final Function<? super V, ? extends K> keyOf;
+    private final long windowMillis;
+    private final int maxBatchSize;
+
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<K, CompletableFuture<V>>();
+    private long batchId;
+
+    /**
+     * @param template 执行查询的模板
+     * @param entityClass 结果类型
+     * @param sql 查询语句，有且只有一个 ? 占位符，位于 IN (?) 中，执行时按本批次的主键个数展开
+     * @param keyOf 从结果中取出主键
+     * @param windowMillis 收集主键的时间窗口（毫秒）
+     * @param maxBatchSize 每批最多的主键数，攒满立即查询
+     */
+    public BatchLoader(DbUtilsTemplate template, Class<V> entityClass, String sql, Function<? super V, ? extends K> keyOf,
+            long windowMillis, int maxBatchSize) {
+        if (SqlUtil.countPlaceholders(sql) != 1) {
+            throw new IllegalArgumentException("Batch loader sql must have exactly one placeholder: " + sql);
+        }
+        if (windowMillis < 0 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch window " + windowMillis + "ms or size " + maxBatchSize);
+        }
+        this.template = template;
+        this.timer = template.batchTimer("dbutils-batch-loader");
+        this.workers = template.batchWorkers("dbutils-batch-loader-worker-", WORKER_THREADS, WORKER_QUEUE_SIZE);
+        this.entityClass = entityClass;
+        this.sql = sql;
+        this.keyOf = keyOf;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * 请求一个主键，结果在所在批次查询完成后给出
+     * @param key 主键
+     * @return 对应的记录，不存在或查询出错时为null；积压的批次超出上限时以 RejectedExecutionException 异常完成
+     */
+    public CompletableFuture<V> load(K key) {
+        Map<K, CompletableFuture<V>> full = null;
+        CompletableFuture<V> future;
+        synchronized (this) {
+            future = pending.get(key);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<V>();
+            pending.put(key, future);
+            if (pending.size() >= maxBatchSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                final long id = batchId;
+                try {
+                    timer.schedule(() -> dispatchPending(id), windowMillis, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // 模板已销毁，立即发出，由工作线程池拒绝
+                    full = takePending();
+                }
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return future;
+    }
+
+    /**
+     * 请求一组主键，等待全部完成
+     * @param keys 主键
+     * @return 主键到记录的映射，按 keys 的顺序，不存在的主键对应null
+     */
+    public Map<K, V> loadMany(Collection<? extends K> keys) {
+        Map<K, CompletableFuture<V>> futures = new LinkedHashMap<K, CompletableFuture<V>>();
+        for (K key : keys) {
+            futures.put(key, load(key));
+        }
+        Map<K, V> result = new LinkedHashMap<K, V>();
+        for (Map.Entry<K, CompletableFuture<V>> entry : futures.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().join());
+        }
+        return result;
+    }
+
+    /**
+     * 立即查询当前已收集的主键，不等时间窗口
+     */
+    public void flush() {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    private void dispatchPending(long id) {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (this) {
+            // 该批次已因攒满或flush提前发出
+            if (id != batchId || pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    private Map<K, CompletableFuture<V>> takePending() {
+        Map<K, CompletableFuture<V>> batch = pending;
+        pending = new LinkedHashMap<K, CompletableFuture<V>>();
+        batchId++;
+        return batch;
+    }
+
+    private void dispatch(final Map<K, CompletableFuture<V>> batch) {
+        try {
+            workers.execute(() -> run(batch));
+        } catch (RejectedExecutionException e) {
+            // 不在调用方（可能是定时线程）上查询，积压时直接失败
+            for (CompletableFuture<V> future : batch.values()) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void run(Map<K, CompletableFuture<V>> batch) {
+        try {
+            // 集合参数由模板按档位展开，不同批次大小只产生少数几种语句
+            List<V> rows = template.find(entityClass, sql, new Object[] { new ArrayList<K>(batch.keySet()) });
+            Map<K, V> byKey = new HashMap<K, V>(rows.size() * 2);
+            for (V row : rows) {
+                byKey.put(keyOf.apply(row), row);
+            }
+            for (Map.Entry<K, CompletableFuture<V>> entry : batch.entrySet()) {
+                entry.getValue().complete(byKey.get(entry.getKey()));
+            }
+        } catch (RuntimeException | Error e) {
+            for (CompletableFuture<V> future : batch.values()) {
+                future.completeExceptionally(e);
+            }
+            throw e;
+        }
+    }
+}
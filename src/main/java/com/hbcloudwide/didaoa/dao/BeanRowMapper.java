@@ -0,0 +1,330 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.dbutils.ResultSetHandler;
+
+/**
+ * 结果集到Bean的映射器，替代 BeanProcessor 的逐行反射
+ * 每个（Bean类型，结果集列布局）只解析一次：列名按忽略大小写匹配属性名（与 BeanProcessor 规则一致），
+ * 匹配结果编译成按列索引调用的 MethodHandle 并缓存，之后每行只做按索引取值和 setter 调用
+ *
+ * <code>
+ * List&lt;User&gt; list = queryRunner.query(sql, BeanRowMapper.listHandler(User.class));
+ * </code>
+ */
+public final class BeanRowMapper<T> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /** 缓存的映射器个数上限，拼接列名等动态sql的列布局可能无穷多，超过后清空重建 */
+    private static final int CACHE_LIMIT = 1024;
+
+    private static final ConcurrentMap<MapperKey, BeanRowMapper<?>> CACHE = new ConcurrentHashMap<MapperKey, BeanRowMapper<?>>();
+
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    /** 下标为列索引-1，未匹配到属性的列为null */
+    private final ColumnSetter[] setters;
+
+    private BeanRowMapper(Class<T> type, MethodHandle constructor, ColumnSetter[] setters) {
+        this.type = type;
+        this.constructor = constructor;
+        this.setters = setters;
+    }
+
+    /**
+     * 获取（或创建并缓存）指定类型和结果集列布局的映射器
+     * @param type Bean类型
+     * @param rs 结果集
+     * @return 映射器
+     * @throws SQLException
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BeanRowMapper<T> forResultSet(Class<T> type, ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        String[] labels = new String[meta.getColumnCount()];
+        for (int i = 0; i < labels.length; i++) {
+            String label = meta.getColumnLabel(i + 1);
+            if (label == null || label.length() == 0) {
+                label = meta.getColumnName(i + 1);
+            }
+            labels[i] = label;
+        }
+        MapperKey key = new MapperKey(type, labels);
+        BeanRowMapper<?> mapper = CACHE.get(key);
+        if (mapper == null) {
+            mapper = create(type, labels);
+            if (CACHE.size() >= CACHE_LIMIT) {
+                CACHE.clear();
+            }
+            BeanRowMapper<?> existing = CACHE.putIfAbsent(key, mapper);
+            if (existing != null) {
+                mapper = existing;
+            }
+        }
+        return (BeanRowMapper<T>) mapper;
+    }
+
+    /**
+     * 将所有行映射为Bean列表的结果集处理器
+     * @param type Bean类型
+     * @return 结果集处理器
+     */
+    public static <T> ResultSetHandler<List<T>> listHandler(final Class<T> type) {
+        return new ResultSetHandler<List<T>>() {
+            @Override
+            public List<T> handle(ResultSet rs) throws SQLException {
+                List<T> list = new ArrayList<T>();
+                if (!rs.next()) {
+                    return list;
+                }
+                BeanRowMapper<T> mapper = forResultSet(type, rs);
+                do {
+                    list.add(mapper.mapRow(rs));
+                } while (rs.next());
+                return list;
+            }
+        };
+    }
+
+    /**
+     * 将第一行映射为Bean的结果集处理器，没有记录时返回null
+     * @param type Bean类型
+     * @return 结果集处理器
+     */
+    public static <T> ResultSetHandler<T> handler(final Class<T> type) {
+        return new ResultSetHandler<T>() {
+            @Override
+            public T handle(ResultSet rs) throws SQLException {
+                return rs.next() ? forResultSet(type, rs).mapRow(rs) : null;
+            }
+        };
+    }
+
+    /**
+     * 将结果集的当前行映射为Bean
+     * @param rs 已定位到当前行的结果集
+     * @return Bean
+     * @throws SQLException
+     */
+    @SuppressWarnings("unchecked")
+    public T mapRow(ResultSet rs) throws SQLException {
+        Object bean;
+        try {
+            bean = (Object) constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new SQLException("Cannot create " + type.getName() + ": " + e.getMessage(), e);
+        }
+        for (int i = 0; i < setters.length; i++) {
+            ColumnSetter setter = setters[i];
+            if (setter != null) {
+                try {
+                    setter.set(bean, rs, i + 1);
+                } catch (SQLException e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new SQLException("Cannot set " + setter.property + " of " + type.getName() + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return (T) bean;
+    }
+
+    private static <T> BeanRowMapper<T> create(Class<T> type, String[] labels) throws SQLException {
+        try {
+            Constructor<T> ctor = type.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            MethodHandle constructor = LOOKUP.unreflectConstructor(ctor).asType(MethodType.methodType(Object.class));
+
+            BeanInfo info = Introspector.getBeanInfo(type);
+            PropertyDescriptor[] props = info.getPropertyDescriptors();
+            ColumnSetter[] setters = new ColumnSetter[labels.length];
+            for (int i = 0; i < labels.length; i++) {
+                for (PropertyDescriptor prop : props) {
+                    if (prop.getWriteMethod() != null && labels[i].equalsIgnoreCase(prop.getName())) {
+                        prop.getWriteMethod().setAccessible(true);
+                        setters[i] = ColumnSetter.of(prop.getName(), prop.getPropertyType(), LOOKUP.unreflect(prop.getWriteMethod()));
+                        break;
+                    }
+                }
+            }
+            return new BeanRowMapper<T>(type, constructor, setters);
+        } catch (NoSuchMethodException e) {
+            throw new SQLException(type.getName() + " has no default constructor", e);
+        } catch (IllegalAccessException e) {
+            throw new SQLException("Cannot access " + type.getName(), e);
+        } catch (IntrospectionException e) {
+            throw new SQLException("Bean introspection failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 单列的取值和赋值，按属性类型特化，基本类型不装箱
+     */
+    private abstract static class ColumnSetter {
+
+        final String property;
+        final MethodHandle setter;
+
+        ColumnSetter(String property, MethodHandle setter) {
+            this.property = property;
+            this.setter = setter;
+        }
+
+        abstract void set(Object bean, ResultSet rs, int index) throws Throwable;
+
+        static ColumnSetter of(String property, Class<?> propType, MethodHandle setter) {
+            if (propType.isPrimitive()) {
+                MethodHandle exact = setter.asType(MethodType.methodType(void.class, Object.class, propType));
+                if (propType == int.class) {
+                    return new ColumnSetter(property, exact) {
+                        void set(Object bean, ResultSet rs, int index) throws Throwable {
+                            this.setter.invokeExact(bean, rs.getInt(index));
+                        }
+                    };
+                } else if (propType == long.class) {
+                    return new ColumnSetter(property, exact) {
+                        void set(Object bean, ResultSet rs, int index) throws Throwable {
+                            this.setter.invokeExact(bean, rs.getLong(index));
+                        }
+                    };
+                } else if (propType == double.class) {
+                    return new ColumnSetter(property, exact) {
+                        void set(Object bean, ResultSet rs, int index) throws Throwable {
+                            this.setter.invokeExact(bean, rs.getDouble(index));
+                        }
+                    };
+                } else if (propType == float.class) {
+                    return new ColumnSetter(property, exact) {
+                        void set(Object bean, ResultSet rs, int index) throws Throwable {
+                            this.setter.invokeExact(bean, rs.getFloat(index));
+                        }
+                    };
+                } else if (propType == boolean.class) {
+                    return new ColumnSetter(property, exact) {
+                        void set(Object bean, ResultSet rs, int index) throws Throwable {
+                            this.setter.invokeExact(bean, rs.getBoolean(index));
+                        }
+                    };
+                } else if (propType == short.class) {
+                    return new ColumnSetter(property, exact) {
+                        void set(Object bean, ResultSet rs, int index) throws Throwable {
+                            this.setter.invokeExact(bean, rs.getShort(index));
+                        }
+                    };
+                } else if (propType == byte.class) {
+                    return new ColumnSetter(property, exact) {
+                        void set(Object bean, ResultSet rs, int index) throws Throwable {
+                            this.setter.invokeExact(bean, rs.getByte(index));
+                        }
+                    };
+                }
+            }
+            return new ObjectSetter(property, propType, setter);
+        }
+    }
+
+    /**
+     * 引用类型属性，取值规则与 BeanProcessor.processColumn 一致，数据库NULL赋值为null
+     */
+    private static final class ObjectSetter extends ColumnSetter {
+
+        private final Class<?> propType;
+        private final boolean primitive;
+
+        ObjectSetter(String property, Class<?> propType, MethodHandle setter) {
+            super(property, setter.asType(MethodType.methodType(void.class, Object.class, Object.class)));
+            this.primitive = propType.isPrimitive();
+            this.propType = primitive ? MethodType.methodType(propType).wrap().returnType() : propType;
+        }
+
+        void set(Object bean, ResultSet rs, int index) throws Throwable {
+            Object value;
+            if (propType == String.class) {
+                value = rs.getString(index);
+            } else if (propType == Long.class) {
+                value = rs.getLong(index);
+            } else if (propType == Integer.class) {
+                value = rs.getInt(index);
+            } else if (propType == Double.class) {
+                value = rs.getDouble(index);
+            } else if (propType == Boolean.class) {
+                value = rs.getBoolean(index);
+            } else if (propType == Float.class) {
+                value = rs.getFloat(index);
+            } else if (propType == Short.class) {
+                value = rs.getShort(index);
+            } else if (propType == Byte.class) {
+                value = rs.getByte(index);
+            } else if (propType == Character.class) {
+                // JDBC没有按字符取值的方法，取字符串的第一个字符，空串视为NULL
+                String text = rs.getString(index);
+                value = text == null || text.isEmpty() ? null : text.charAt(0);
+            } else if (propType == Timestamp.class || propType == java.util.Date.class) {
+                value = rs.getTimestamp(index);
+            } else if (propType == java.sql.Date.class) {
+                value = rs.getDate(index);
+            } else if (propType == Time.class) {
+                value = rs.getTime(index);
+            } else {
+                value = rs.getObject(index);
+            }
+            if (rs.wasNull()) {
+                value = null;
+            }
+            if (value == null && primitive) {
+                return;
+            }
+            if (value != null && !propType.isInstance(value)) {
+                throw new SQLException("Cannot set " + property + ": incompatible types, cannot convert "
+                        + value.getClass().getName() + " to " + propType.getName());
+            }
+            this.setter.invokeExact(bean, value);
+        }
+    }
+
+    private static final class MapperKey {
+
+        private final Class<?> type;
+        private final String[] labels;
+        private final int hash;
+
+        MapperKey(Class<?> type, String[] labels) {
+            this.type = type;
+            this.labels = labels;
+            this.hash = 31 * type.hashCode() + Arrays.hashCode(labels);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof MapperKey)) {
+                return false;
+            }
+            MapperKey other = (MapperKey) obj;
+            return type == other.type && Arrays.equals(labels, other.labels);
+        }
+    }
+}
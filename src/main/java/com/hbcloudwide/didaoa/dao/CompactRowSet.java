@@ -0,0 +1,258 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.dbutils.ResultSetHandler;
+
+/**
+ * 紧凑的查询结果：所有行共用一份列名索引，每行只是一个 Object[]
+ * 与 MapListHandler 每行一个大小写不敏感HashMap相比，不再为每行重复保存列名和哈希表
+ * 需要 Map 的地方可以通过 {@link #asMap(int)} / {@link #asMapList()} 取得按需生成的只读视图
+ */
+public class CompactRowSet implements Iterable<Object[]> {
+
+    private static final Object[][] EMPTY = new Object[0][];
+
+    private final String[] columns;
+    /** 小写列名 -> 列下标，重名列取第一个 */
+    private final Map<String, Integer> index;
+    private Object[][] rows = EMPTY;
+    private int size;
+
+    public CompactRowSet(String[] columns) {
+        this.columns = columns;
+        this.index = new HashMap<String, Integer>(columns.length * 2);
+        for (int i = columns.length - 1; i >= 0; i--) {
+            index.put(columns[i].toLowerCase(Locale.ENGLISH), i);
+        }
+    }
+
+    /**
+     * 读取全部行的结果集处理器
+     */
+    public static final ResultSetHandler<CompactRowSet> HANDLER = new ResultSetHandler<CompactRowSet>() {
+        @Override
+        public CompactRowSet handle(ResultSet rs) throws SQLException {
+            ResultSetMetaData meta = rs.getMetaData();
+            int count = meta.getColumnCount();
+            String[] columns = new String[count];
+            for (int i = 0; i < count; i++) {
+                String label = meta.getColumnLabel(i + 1);
+                columns[i] = label == null || label.length() == 0 ? meta.getColumnName(i + 1) : label;
+            }
+            CompactRowSet rowSet = new CompactRowSet(columns);
+            while (rs.next()) {
+                Object[] row = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                rowSet.add(row);
+            }
+            rowSet.trimToSize();
+            return rowSet;
+        }
+    };
+
+    /**
+     * 追加一行，数组长度须与列数一致
+     * @param row 行数据
+     */
+    public void add(Object[] row) {
+        if (row.length != columns.length) {
+            throw new IllegalArgumentException("Expected " + columns.length + " values but got " + row.length);
+        }
+        if (size == rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(16, size + (size >> 1)));
+        }
+        rows[size++] = row;
+    }
+
+    /**
+     * 释放多余的行数组容量
+     */
+    public void trimToSize() {
+        if (rows.length > size) {
+            rows = Arrays.copyOf(rows, size);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public String[] getColumnNames() {
+        return columns.clone();
+    }
+
+    /**
+     * 列名对应的下标（忽略大小写），不存在时返回-1
+     * @param column 列名
+     * @return 列下标，从0开始
+     */
+    public int getColumnIndex(String column) {
+        Integer i = index.get(column.toLowerCase(Locale.ENGLISH));
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * @param row 行下标，从0开始
+     * @param column 列下标，从0开始
+     * @return 值
+     */
+    public Object get(int row, int column) {
+        return rowAt(row)[column];
+    }
+
+    /**
+     * @param row 行下标，从0开始
+     * @param column 列名，忽略大小写
+     * @return 值，列不存在时返回null
+     */
+    public Object get(int row, String column) {
+        int i = getColumnIndex(column);
+        return i < 0 ? null : rowAt(row)[i];
+    }
+
+    /**
+     * 行数据，返回的是内部数组，不要修改
+     * @param row 行下标，从0开始
+     * @return 行数据
+     */
+    public Object[] getRow(int row) {
+        return rowAt(row);
+    }
+
+    /**
+     * 单行的只读Map视图，键查找忽略大小写
+     * @param row 行下标，从0开始
+     * @return Map视图
+     */
+    public Map<String, Object> asMap(int row) {
+        return new RowMap(rowAt(row));
+    }
+
+    /**
+     * 全部行的只读 List&lt;Map&gt; 视图，Map在访问时才生成
+     * @return List视图
+     */
+    public List<Map<String, Object>> asMapList() {
+        return new AbstractList<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> get(int i) {
+                return asMap(i);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Object[]> iterator() {
+        return new Iterator<Object[]>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Object[] next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return rows[next++];
+            }
+        };
+    }
+
+    private Object[] rowAt(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+        }
+        return rows[row];
+    }
+
+    private final class RowMap extends AbstractMap<String, Object> {
+
+        private final Object[] row;
+
+        RowMap(Object[] row) {
+            this.row = row;
+        }
+
+        @Override
+        public Object get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            int i = getColumnIndex((String) key);
+            return i < 0 ? null : row[i];
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && getColumnIndex((String) key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return columns.length;
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public int size() {
+                    return columns.length;
+                }
+
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    return new Iterator<Map.Entry<String, Object>>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < columns.length;
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next() {
+                            if (next >= columns.length) {
+                                throw new NoSuchElementException();
+                            }
+                            int i = next++;
+                            return new SimpleImmutableEntry<String, Object>(columns[i], row[i]);
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 在DbUtilsTemplate取得的连接上执行的操作
+ * 连接的获取、归还和计时由模板负责，回调中不要关闭连接
+ */
+public interface ConnectionCallback<T> {
+
+    T doInConnection(Connection conn) throws SQLException;
+}
@@ -1,24 +1,75 @@
 package com.hbcloudwide.didaoa.dao;
 
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException; 
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement; 
 import java.util.ArrayList; 
+import java.util.Arrays; 
+import java.util.Collection; 
+import java.util.Collections; 
+import java.util.HashMap;
+import java.util.Iterator; 
 import java.util.List; 
 import java.util.Map; 
+import java.util.Set; 
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 import javax.sql.DataSource; 
 
+import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.dbutils.QueryRunner; 
-import org.apache.commons.dbutils.handlers.BeanHandler; 
-import org.apache.commons.dbutils.handlers.BeanListHandler; 
+import org.apache.commons.dbutils.ResultSetHandler; 
 import org.apache.commons.dbutils.handlers.MapHandler; 
 import org.apache.commons.dbutils.handlers.MapListHandler; 
 import org.apache.commons.dbutils.handlers.ScalarHandler; 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean; 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.alibaba.druid.pool.DruidDataSource;
 import com.hbcloudwide.didaoa.config.DruidConfig; 
+import com.hbcloudwide.didaoa.utils.SqlUtil; 
 
 /** 
 * 调用Apache Commons DBUtil组件的数据库操作类 
@@ -30,16 +81,185 @@ import com.hbcloudwide.didaoa.config.DruidConfig;
 *     this.dbUtilsTemplate = dbUtilsTemplate; 
 * } 
 * </code> 
+* 查询和更新的参数可以是 Collection，对应 IN (?) 中的一个 ?，执行时按档位展开为多个占位符 
 * @author Sunshine 
 * @version 1.0 2009-07-29 
 */ 
-public class DbUtilsTemplate { 
+public class DbUtilsTemplate implements DisposableBean { 
 
     
 
 	private DataSource dataSource; 
-    private QueryRunner queryRunner; 
+    private final QueryRunner queryRunner = new QueryRunner(); 
     private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * 流式查询的fetchSize，Integer.MIN_VALUE 表示MySQL驱动逐行读取，不在内存中缓存整个结果集
+     */
+    private int streamFetchSize = Integer.MIN_VALUE;
+
+    /**
+     * 分块批量更新时每块的默认行数
+     */
+    private int batchChunkSize = 1000;
+
+    /**
+     * 自适应分块的每块目标耗时（毫秒），大于0时 batchUpdate(sql, Iterator) 按耗时自动调整块大小，batchChunkSize 作为初始值
+     */
+    private long batchTargetMillis;
+
+    private static final int MIN_ADAPTIVE_CHUNK_SIZE = 50;
+
+    private static final int MAX_ADAPTIVE_CHUNK_SIZE = 20000;
+
+    /**
+     * 自适应块大小控制器的最大条目数，超出时整体清空
+     */
+    private static final int BATCH_SIZERS_LIMIT = 256;
+
+    /**
+     * 语句指纹 -> 最近一次批量写入任务的自适应块大小控制器，用于统计和下一次任务的初始块大小
+     */
+    private final ConcurrentMap<String, AdaptiveBatchSizer> batchSizers = new ConcurrentHashMap<String, AdaptiveBatchSizer>();
+
+    /**
+     * 命名参数sql解析结果缓存的最大条目数，超出时整体清空
+     */
+    private static final int NAMED_SQL_CACHE_LIMIT = 1024;
+
+    /**
+     * 带命名参数的sql -> 解析结果
+     */
+    private final ConcurrentMap<String, NamedSql> namedSqlCache = new ConcurrentHashMap<String, NamedSql>();
+
+    /**
+     * 按执行过的不同sql个数调整连接池的预编译语句缓存，为null时不调整
+     */
+    private volatile StatementCacheTuner statementCacheTuner;
+
+    /**
+     * MySQL单条预编译语句最多允许的占位符个数
+     */
+    private static final int MAX_PLACEHOLDERS = 65535;
+
+    /**
+     * 集合参数展开时最大的2的幂次档位，更长的列表按它的倍数取整
+     */
+    private static final int MAX_IN_BUCKET = 1024;
+
+    /**
+     * 只用来填充参数，不查询ParameterMetaData，null按VARCHAR绑定
+     */
+    private final QueryRunner statementFiller = new QueryRunner(true);
+
+    /**
+     * 异步接口使用的线程池，线程数不超过连接池最大连接数
+     */
+    private volatile ExecutorService asyncExecutor;
+
+    /**
+     * parallelScan 各分段专用的线程池，与异步接口的线程池分开，避免在异步线程中扫描时等待排在自己后面的分段
+     */
+    private volatile ExecutorService scanExecutor;
+
+    /**
+     * 组提交、批量加载、后写缓冲的定时线程和工作线程池，按线程名创建，模板销毁时关闭
+     */
+    private final Map<String, ScheduledExecutorService> batchTimers = new HashMap<String, ScheduledExecutorService>();
+    private final Map<String, ExecutorService> batchWorkers = new HashMap<String, ExecutorService>();
+    private boolean destroyed;
+
+    /** 销毁时等待定时批次发出、进行中的批次完成的最长时间（秒） */
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+
+    /**
+     * 只读从库路由，为null时读写都走主库
+     */
+    private ReplicaRouter replicaRouter;
+
+    /**
+     * 分页总数缓存的有效期（毫秒），0表示不缓存
+     */
+    private long countCacheMillis = 60000;
+
+    /**
+     * 分页总数缓存的最大条目数，超出时整体清空
+     */
+    private static final int COUNT_CACHE_LIMIT = 1024;
+
+    /**
+     * 分页总数缓存：sql+参数 -> {总数, 过期时间, 统计前所涉及表的版本号之和, countEpoch}
+     */
+    private final ConcurrentMap<QueryKey, long[]> countCache = new ConcurrentHashMap<QueryKey, long[]>();
+
+    /**
+     * 表名 -> 通过本类写入的次数，写入后该表的分页总数缓存失效；识别不出表名的写入记在 ANY_TABLE 下
+     */
+    private final ConcurrentMap<String, AtomicLong> countVersions = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * countVersions 超出上限清空时递增，清空前缓存的总数全部作废
+     */
+    private final AtomicLong countEpoch = new AtomicLong();
+
+    /**
+     * SQL指标，为null时不统计
+     */
+    private SqlMetrics sqlMetrics;
+
+    /**
+     * inTransaction 使用的事务管理器，未设置时按数据源创建 DataSourceTransactionManager
+     */
+    private volatile PlatformTransactionManager transactionManager;
+
+    private volatile TransactionTemplate transactionTemplate;
+
+    /**
+     * 事务中把 SQLException 转换为 Spring 的 DataAccessException
+     */
+    private volatile SQLExceptionTranslator exceptionTranslator;
+
+    /**
+     * 合并并发的相同查询，为null时不合并
+     */
+    private volatile SingleFlight singleFlight;
+
+    /**
+     * 查询结果缓存，为null时不缓存
+     */
+    private volatile QueryCache queryCache;
+
+    /**
+     * sql语句涉及的表名缓存的最大条目数，超出时整体清空
+     */
+    private static final int TABLES_CACHE_LIMIT = 4096;
+
+    /**
+     * sql语句 -> 涉及的表名，查询缓存和写后失效使用
+     */
+    private final ConcurrentMap<String, Set<String>> tablesCache = new ConcurrentHashMap<String, Set<String>>();
+
+    /**
+     * 从库复制延迟的估计（毫秒）：表在这段时间内被写过时，从库读到的结果可能是写入前的，不写入查询缓存
+     */
+    private long replicaLagMillis = 1000;
+
+    /**
+     * 表名 -> 最近一次写后失效的时间，识别不出表名的写操作记在 ANY_TABLE 下；超出 TABLES_CACHE_LIMIT 时整体清空
+     */
+    private final ConcurrentMap<String, Long> tableWrites = new ConcurrentHashMap<String, Long>();
+
+    private static final String ANY_TABLE = "*";
+
+    /**
+     * 键集分页和并行扫描在WHERE中追加条件，不支持的WHERE之后的子句
+     */
+    private static final String[] TRAILING_CLAUSES = { "GROUP", "HAVING", "ORDER", "LIMIT", "UNION" };
+
+    /**
+     * writeBehindBuffer 创建且尚未关闭的后写缓冲，模板销毁时关闭
+     */
+    private final Set<WriteBehindBuffer<?>> writeBehindBuffers = ConcurrentHashMap.newKeySet();
     
     @Autowired
     private DruidConfig druidConfig;
@@ -80,14 +300,11 @@ public class DbUtilsTemplate {
      * @return 受影响的行数 
      */ 
     public int update(String sql, Object[] params) { 
-        queryRunner = new QueryRunner(dataSource); 
         int affectedRows = 0; 
+        final BoundSql bound = bind(sql, params); 
         try { 
-            if (params == null) { 
-                affectedRows = queryRunner.update(sql); 
-            } else { 
-                affectedRows = queryRunner.update(sql, params); 
-            } 
+            affectedRows = execute(bound.sql, false, conn -> bound.params == null ? queryRunner.update(conn, bound.sql) 
+                    : queryRunner.update(conn, bound.sql, bound.params), Integer::longValue); 
         } catch (SQLException e) { 
             log.error("Error occured while attempting to update data", e); 
         } 
@@ -100,17 +317,444 @@ public class DbUtilsTemplate {
      * @param params 二维参数数组 
      * @return 受影响的行数的数组 
      */ 
-    public int[] batchUpdate(String sql, Object[][] params) { 
-        queryRunner = new QueryRunner(dataSource); 
+    public int[] batchUpdate(final String sql, final Object[][] params) { 
         int[] affectedRows = new int[0]; 
         try { 
-            affectedRows = queryRunner.batch(sql, params); 
+            affectedRows = execute(sql, false, conn -> queryRunner.batch(conn, sql, params), DbUtilsTemplate::sum); 
         } catch (SQLException e) { 
             log.error("Error occured while attempting to batch update data", e); 
         } 
         return affectedRows; 
     }     
 
+    /** 
+     * 分块执行批量sql语句，参数逐行从迭代器读取，按 batchChunkSize 分块并逐块提交；batchTargetMillis 大于0时按每块耗时自动调整块大小 
+     * @param sql sql语句 
+     * @param params 参数行迭代器，Stream 可传入 stream.iterator() 
+     * @return 受影响的总行数 
+     */ 
+    public long batchUpdate(String sql, Iterator<Object[]> params) { 
+        if (batchTargetMillis > 0) { 
+            return batchUpdate(sql, params, batchSizer(sql), true); 
+        } 
+        return batchUpdate(sql, params, batchChunkSize, true); 
+    } 
+
+    /** 
+     * 分块执行批量sql语句，参数逐行从迭代器读取，内存中最多只保留一块参数 
+     * 单行的 INSERT/REPLACE ... VALUES (...) 会改写成每块一条多行 VALUES (...),(...) 语句，其余语句按块走JDBC batch 
+     * @param sql sql语句 
+     * @param params 参数行迭代器，Stream 可传入 stream.iterator() 
+     * @param chunkSize 每块的行数 
+     * @param commitPerChunk 是否每块提交一次；为false或在事务中时沿用连接原有的提交方式 
+     * @return 受影响的总行数（驱动未返回行数的不计入） 
+     */ 
+    public long batchUpdate(final String sql, final Iterator<Object[]> params, int chunkSize, boolean commitPerChunk) { 
+        return batchUpdate(sql, params, chunkSize, null, commitPerChunk); 
+    } 
+
+    /** 
+     * 分块执行批量sql语句，块大小由控制器按每块的耗时自动调整，其余同 {@link #batchUpdate(String, Iterator, int, boolean)} 
+     * @param sql sql语句 
+     * @param params 参数行迭代器 
+     * @param sizer 块大小控制器，可在多次调用之间复用 
+     * @param commitPerChunk 是否每块提交一次 
+     * @return 受影响的总行数 
+     */ 
+    public long batchUpdate(String sql, Iterator<Object[]> params, AdaptiveBatchSizer sizer, boolean commitPerChunk) { 
+        return batchUpdate(sql, params, 0, sizer, commitPerChunk); 
+    } 
+
+    private long batchUpdate(final String sql, final Iterator<Object[]> params, int chunkSize, final AdaptiveBatchSizer sizer, 
+            boolean commitPerChunk) { 
+        // 在事务中时由事务统一提交 
+        final boolean chunkCommit = commitPerChunk && !isTransactional(); 
+        final String[] insert = SqlUtil.splitInsertValues(sql); 
+        // 多行INSERT的占位符个数不能超过上限 
+        final int width = insert == null ? -1 : SqlUtil.countPlaceholders(insert[1]); 
+        final int maxSize = insert == null ? Integer.MAX_VALUE : MAX_PLACEHOLDERS / Math.max(1, width); 
+        final int fixedSize = Math.max(1, Math.min(chunkSize, maxSize)); 
+        // 已完成的块的行数，出错时用于日志和返回 
+        final long[] committed = new long[1]; 
+        try { 
+            return execute(sql, false, conn -> { 
+                boolean autoCommit = conn.getAutoCommit(); 
+                if (chunkCommit && autoCommit) { 
+                    conn.setAutoCommit(false); 
+                } 
+                PreparedStatement fullChunk = null; 
+                // fullChunk 对应的块大小，块大小变化时重新准备语句 
+                int fullSize = 0; 
+                long total = 0; 
+                try { 
+                    int size = sizer == null ? fixedSize : Math.max(1, Math.min(sizer.nextSize(), maxSize)); 
+                    List<Object[]> chunk = new ArrayList<Object[]>(Math.min(size, 1024)); 
+                    while (params.hasNext()) { 
+                        chunk.add(params.next()); 
+                        if (chunk.size() < size && params.hasNext()) { 
+                            continue; 
+                        } 
+                        long start = System.nanoTime(); 
+                        if (chunk.size() == size) { 
+                            if (fullChunk == null || (insert != null && fullSize != size)) { 
+                                DbUtils.closeQuietly(fullChunk); 
+                                fullChunk = conn.prepareStatement(insert != null ? SqlUtil.multiRowInsert(insert, size) : sql); 
+                                fullSize = size; 
+                            } 
+                            total += executeChunk(fullChunk, width, chunk); 
+                        } else { 
+                            PreparedStatement tail = conn.prepareStatement(insert != null ? SqlUtil.multiRowInsert(insert, chunk.size()) : sql); 
+                            try { 
+                                total += executeChunk(tail, width, chunk); 
+                            } finally { 
+                                DbUtils.closeQuietly(tail); 
+                            } 
+                        } 
+                        if (chunkCommit) { 
+                            conn.commit(); 
+                        } 
+                        committed[0] = total; 
+                        if (sizer != null) { 
+                            sizer.record(chunk.size(), System.nanoTime() - start); 
+                            size = Math.max(1, Math.min(sizer.nextSize(), maxSize)); 
+                        } 
+                        chunk.clear(); 
+                    } 
+                    return total; 
+                } catch (SQLException e) { 
+                    if (chunkCommit) { 
+                        try { 
+                            conn.rollback(); 
+                        } catch (SQLException ex) { 
+                            log.warn("Rollback failed", ex); 
+                        } 
+                    } 
+                    throw e; 
+                } finally { 
+                    DbUtils.closeQuietly(fullChunk); 
+                    if (chunkCommit && autoCommit) { 
+                        try { 
+                            conn.setAutoCommit(true); 
+                        } catch (SQLException e) { 
+                            log.warn("Failed to restore autoCommit", e); 
+                        } 
+                    } 
+                } 
+            }, Long::longValue); 
+        } catch (SQLException e) { 
+            log.error("Error occured while attempting to batch update data, {} rows done before the failure", committed[0], e); 
+        } 
+        return committed[0]; 
+    } 
+
+    /** 
+     * 为本次批量写入创建自适应块大小控制器：每次调用单独一个，并发的任务互不影响； 
+     * 初始块大小取同一语句上一次任务学到的值，并替换为统计中该语句的当前控制器 
+     */ 
+    private AdaptiveBatchSizer batchSizer(String sql) { 
+        String fingerprint = SqlUtil.fingerprint(sql); 
+        AdaptiveBatchSizer previous = batchSizers.get(fingerprint); 
+        if (previous == null && batchSizers.size() >= BATCH_SIZERS_LIMIT) { 
+            batchSizers.clear(); 
+        } 
+        int minSize = Math.min(MIN_ADAPTIVE_CHUNK_SIZE, batchChunkSize); 
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(batchTargetMillis, 
+                previous == null ? batchChunkSize : previous.nextSize(), minSize, MAX_ADAPTIVE_CHUNK_SIZE, 
+                Math.max(minSize, batchChunkSize / 10)); 
+        batchSizers.put(fingerprint, sizer); 
+        return sizer; 
+    } 
+
+    /** 
+     * 批量插入并返回自增主键，单行的 INSERT ... VALUES (...) 按块改写成多行INSERT，其余语句走JDBC batch 
+     * （值列表之外带占位符的，如 ON DUPLICATE KEY UPDATE b = b + ?，也走JDBC batch） 
+     * 主键按参数行的顺序返回；ON DUPLICATE KEY UPDATE、INSERT IGNORE 等不是每行都生成新主键的语句无法一一对应 
+     * @param sql sql语句 
+     * @param params 二维参数数组，每行的参数个数须与语句的占位符数一致 
+     * @return 每行的自增主键，出错时只含出错前已完成的块 
+     * @throws IllegalArgumentException 某行的参数个数不对，此时不执行任何插入 
+     */ 
+    public long[] insertBatch(final String sql, final Object[][] params) { 
+        if (params.length == 0) { 
+            return new long[0]; 
+        } 
+        // 执行前检查，避免在中途的块出错时前面的块已经插入 
+        int placeholders = SqlUtil.countPlaceholders(sql); 
+        for (int r = 0; r < params.length; r++) { 
+            if (params[r].length != placeholders) { 
+                throw new IllegalArgumentException("Row " + r + " has " + params[r].length + " parameters but " + sql 
+                        + " has " + placeholders + " placeholders"); 
+            } 
+        } 
+        final String[] insert = SqlUtil.splitInsertValues(sql); 
+        final int width = insert == null ? -1 : SqlUtil.countPlaceholders(insert[1]); 
+        final int size = Math.max(1, Math.min(batchChunkSize, MAX_PLACEHOLDERS / Math.max(1, width))); 
+        final long[] keys = new long[params.length]; 
+        // 已取得主键的行数 
+        final int[] done = new int[1]; 
+        try { 
+            execute(sql, false, conn -> { 
+                PreparedStatement fullChunk = null; 
+                try { 
+                    for (int from = 0; from < params.length; from += size) { 
+                        int n = Math.min(size, params.length - from); 
+                        PreparedStatement stmt = n == size ? fullChunk : null; 
+                        if (stmt == null) { 
+                            stmt = conn.prepareStatement(insert != null ? SqlUtil.multiRowInsert(insert, n) : sql, 
+                                    Statement.RETURN_GENERATED_KEYS); 
+                            if (n == size) { 
+                                fullChunk = stmt; 
+                            } 
+                        } 
+                        try { 
+                            executeChunk(stmt, width, Arrays.asList(params).subList(from, from + n)); 
+                            readGeneratedKeys(stmt, keys, from, n); 
+                        } finally { 
+                            if (stmt != fullChunk) { 
+                                DbUtils.closeQuietly(stmt); 
+                            } 
+                        } 
+                        done[0] = from + n; 
+                    } 
+                } finally { 
+                    DbUtils.closeQuietly(fullChunk); 
+                } 
+                return keys; 
+            }, k -> done[0]); 
+            return keys; 
+        } catch (SQLException e) { 
+            log.error("Error occured while attempting to insert data, {} rows done before the failure", done[0], e); 
+        } 
+        return Arrays.copyOf(keys, done[0]); 
+    } 
+
+    /** 
+     * 批量插入Bean并把自增主键写回Bean 
+     * <code> 
+     * insertBatch("INSERT INTO user (user_name, pass_word) VALUES (?, ?)", users, "id", "user_name", "pass_word"); 
+     * </code> 
+     * @param sql sql语句 
+     * @param beans 要插入的Bean，类型相同 
+     * @param keyProperty 主键属性，支持 long、int 及其包装类型 
+     * @param properties 按占位符顺序绑定的属性 
+     * @return 每行的自增主键，出错时只含出错前已完成的块（这些Bean的主键已写回） 
+     */ 
+    public <T> long[] insertBatch(String sql, List<T> beans, String keyProperty, String... properties) { 
+        if (beans.isEmpty()) { 
+            return new long[0]; 
+        } 
+        Class<?> type = beans.get(0).getClass(); 
+        PropertyDescriptor[] readers = new PropertyDescriptor[properties.length]; 
+        for (int i = 0; i < properties.length; i++) { 
+            readers[i] = property(type, properties[i], false); 
+        } 
+        PropertyDescriptor key = property(type, keyProperty, true); 
+        Class<?> keyType = key.getPropertyType(); 
+        boolean intKey = keyType == int.class || keyType == Integer.class; 
+        if (!intKey && keyType != long.class && keyType != Long.class) { 
+            throw new IllegalArgumentException("Unsupported key type " + keyType.getName() + " of " + keyProperty); 
+        } 
+        try { 
+            Object[][] params = new Object[beans.size()][properties.length]; 
+            for (int r = 0; r < params.length; r++) { 
+                for (int i = 0; i < readers.length; i++) { 
+                    params[r][i] = readers[i].getReadMethod().invoke(beans.get(r)); 
+                } 
+            } 
+            long[] keys = insertBatch(sql, params); 
+            for (int r = 0; r < keys.length; r++) { 
+                key.getWriteMethod().invoke(beans.get(r), intKey ? (Object) (int) keys[r] : (Object) keys[r]); 
+            } 
+            return keys; 
+        } catch (ReflectiveOperationException e) { 
+            throw new IllegalArgumentException("Cannot access properties of " + type.getName(), e); 
+        } 
+    } 
+
+    /** 
+     * 批量插入或更新，按块改写成多行 INSERT ... ON DUPLICATE KEY UPDATE 并逐块提交，见 {@link Upsert} 
+     * @param upsert 语句 
+     * @param rows 参数行，按 upsert 的列顺序 
+     * @return MySQL返回的受影响行数：新插入的行计1，更新的行计2，未变化的行计0 
+     */ 
+    public long upsert(Upsert upsert, Iterator<Object[]> rows) { 
+        return batchUpdate(upsert.toSql(), rows, batchChunkSize, true); 
+    } 
+
+    /** 
+     * 批量插入或更新，见 {@link #upsert(Upsert, Iterator)} 
+     * @param upsert 语句 
+     * @param rows 二维参数数组，按 upsert 的列顺序 
+     * @return 受影响行数 
+     */ 
+    public long upsert(Upsert upsert, Object[][] rows) { 
+        return upsert(upsert, Arrays.asList(rows).iterator()); 
+    } 
+
+    /** 
+     * 批量插入或更新Bean，每列取Bean中同名（忽略大小写）属性的值，见 {@link #upsert(Upsert, Iterator)} 
+     * @param upsert 语句 
+     * @param beans 要写入的Bean，类型相同 
+     * @return 受影响行数 
+     */ 
+    public <T> long upsert(Upsert upsert, List<T> beans) { 
+        if (beans.isEmpty()) { 
+            return 0; 
+        } 
+        Class<?> type = beans.get(0).getClass(); 
+        List<String> columns = upsert.getColumns(); 
+        final PropertyDescriptor[] readers = new PropertyDescriptor[columns.size()]; 
+        for (int i = 0; i < readers.length; i++) { 
+            readers[i] = property(type, columns.get(i), false); 
+        } 
+        // 逐块读取属性，不一次性生成所有参数行 
+        final Iterator<T> it = beans.iterator(); 
+        return upsert(upsert, new Iterator<Object[]>() { 
+            @Override 
+            public boolean hasNext() { 
+                return it.hasNext(); 
+            } 
+
+            @Override 
+            public Object[] next() { 
+                T bean = it.next(); 
+                Object[] row = new Object[readers.length]; 
+                try { 
+                    for (int i = 0; i < readers.length; i++) { 
+                        row[i] = readers[i].getReadMethod().invoke(bean); 
+                    } 
+                } catch (ReflectiveOperationException e) { 
+                    throw new IllegalArgumentException("Cannot access properties of " + type.getName(), e); 
+                } 
+                return row; 
+            } 
+        }); 
+    } 
+
+    /** 
+     * 用 LOAD DATA LOCAL INFILE 批量导入，参数行在驱动读取时逐行编码后直接发送，不生成临时文件也不构造参数数组 
+     * 比多行INSERT快得多，适合初始化和定时导入；需要MySQL驱动，服务端需开启 local_infile 
+     * @param table 表名 
+     * @param columns 列名，按参数行的顺序 
+     * @param rows 参数行，支持字符串、数字、布尔、日期和 byte[]，null 写为 NULL 
+     * @return 导入的行数，出错时返回0 
+     */ 
+    public long loadData(String table, String[] columns, Iterator<Object[]> rows) { 
+        String sql = "LOAD DATA LOCAL INFILE 'stream' INTO TABLE " + table + " " + LoadDataInputStream.FORMAT 
+                + " (" + String.join(", ", columns) + ")"; 
+        return loadData(sql, new LoadDataInputStream(rows)); 
+    } 
+
+    /** 
+     * 用 LOAD DATA LOCAL INFILE 导入UTF-8编码的CSV：逗号分隔，字段可用双引号括起（内部的双引号写两次），行以 \n 结束 
+     * @param table 表名 
+     * @param columns 列名，按CSV中列的顺序 
+     * @param csv CSV数据，导入后关闭 
+     * @param header 第一行是否为标题行 
+     * @return 导入的行数，出错时返回0 
+     */ 
+    public long loadCsv(String table, String[] columns, InputStream csv, boolean header) { 
+        String sql = "LOAD DATA LOCAL INFILE 'stream' INTO TABLE " + table 
+                + " CHARACTER SET utf8 FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY '' LINES TERMINATED BY '\\n'" 
+                + (header ? " IGNORE 1 LINES" : "") + " (" + String.join(", ", columns) + ")"; 
+        try { 
+            return loadData(sql, csv); 
+        } finally { 
+            try { 
+                csv.close(); 
+            } catch (IOException e) { 
+                log.warn("Failed to close csv stream", e); 
+            } 
+        } 
+    } 
+
+    /** 
+     * 用 LOAD DATA LOCAL INFILE 导入CSV文件，格式见 {@link #loadCsv(String, String[], InputStream, boolean)} 
+     * @param table 表名 
+     * @param columns 列名，按CSV中列的顺序 
+     * @param file CSV文件 
+     * @param header 第一行是否为标题行 
+     * @return 导入的行数，出错时返回0 
+     */ 
+    public long loadCsv(String table, String[] columns, File file, boolean header) { 
+        InputStream in; 
+        try { 
+            in = new BufferedInputStream(new FileInputStream(file), 65536); 
+        } catch (IOException e) { 
+            log.error("Error occured while attempting to open " + file, e); 
+            return 0; 
+        } 
+        return loadCsv(table, columns, in, header); 
+    } 
+
+    /** 
+     * 执行 LOAD DATA LOCAL INFILE 语句，文件内容从输入流读取（语句中的文件名被忽略） 
+     * @param sql LOAD DATA LOCAL INFILE 语句 
+     * @param in 文件内容 
+     * @return 导入的行数，出错时返回0 
+     */ 
+    public long loadData(final String sql, final InputStream in) { 
+        try { 
+            return execute(sql, false, conn -> { 
+                Statement stmt = conn.createStatement(); 
+                try { 
+                    if (!stmt.isWrapperFor(com.mysql.jdbc.Statement.class)) { 
+                        throw new SQLFeatureNotSupportedException("LOAD DATA LOCAL INFILE needs the MySQL Connector/J driver"); 
+                    } 
+                    stmt.unwrap(com.mysql.jdbc.Statement.class).setLocalInfileInputStream(in); 
+                    return (long) stmt.executeUpdate(sql); 
+                } finally { 
+                    DbUtils.closeQuietly(stmt); 
+                } 
+            }, Long::longValue); 
+        } catch (SQLException e) { 
+            log.error("Error occured while attempting to load data", e); 
+        } 
+        return 0; 
+    } 
+
+    /** 
+     * 读取一块语句生成的 n 个自增主键 
+     */ 
+    private static void readGeneratedKeys(PreparedStatement stmt, long[] keys, int from, int n) throws SQLException { 
+        ResultSet rs = stmt.getGeneratedKeys(); 
+        int i = 0; 
+        try { 
+            while (i < n && rs.next()) { 
+                keys[from + i++] = rs.getLong(1); 
+            } 
+        } finally { 
+            DbUtils.closeQuietly(rs); 
+        } 
+        if (i < n) { 
+            throw new SQLException("Expected " + n + " generated keys but got " + i); 
+        } 
+    } 
+
+    /** 
+     * 执行一块参数：多行INSERT按行依次绑定后执行一次，否则逐行addBatch 
+     * @param width 多行INSERT每行的占位符数，不是多行INSERT时为-1 
+     */ 
+    private long executeChunk(PreparedStatement stmt, int width, List<Object[]> chunk) throws SQLException { 
+        if (width >= 0) { 
+            Object[] flat = new Object[width * chunk.size()]; 
+            for (int i = 0; i < chunk.size(); i++) { 
+                Object[] row = chunk.get(i); 
+                if (row.length != width) { 
+                    throw new SQLException("Wrong number of parameters: expected " + width + ", was given " + row.length); 
+                } 
+                System.arraycopy(row, 0, flat, i * width, width); 
+            } 
+            statementFiller.fillStatement(stmt, flat); 
+            return stmt.executeUpdate(); 
+        } 
+        for (Object[] row : chunk) { 
+            statementFiller.fillStatement(stmt, row); 
+            stmt.addBatch(); 
+        } 
+        return sum(stmt.executeBatch()); 
+    } 
+
     /** 
      * 执行查询，将每行的结果保存到一个Map对象中，然后将所有Map对象保存到List中 
      * @param sql sql语句 
@@ -138,20 +782,51 @@ public class DbUtilsTemplate {
      */ 
     @SuppressWarnings("unchecked") 
     public List<Map<String, Object>> find(String sql, Object[] params) { 
-        queryRunner = new QueryRunner(dataSource); 
         List<Map<String, Object>> list = new ArrayList<Map<String,Object>>(); 
         try { 
-            if (params == null) { 
-                list = (List<Map<String, Object>>) queryRunner.query(sql, new MapListHandler()); 
-            } else { 
-                list = (List<Map<String, Object>>) queryRunner.query(sql, new MapListHandler(), params); 
-            } 
+            list = (List<Map<String, Object>>) query("list", null, sql, new MapListHandler(), params); 
         } catch (SQLException e) { 
             log.error("Error occured while attempting to query data", e); 
         } 
         return list; 
     } 
       
+    /** 
+     * 执行查询，结果以紧凑的 CompactRowSet 返回，所有行共用一份列名索引 
+     * @param sql sql语句 
+     * @return 查询结果 
+     */ 
+    public CompactRowSet findRowSet(String sql) { 
+        return findRowSet(sql, null); 
+    } 
+
+    /** 
+     * 执行查询，结果以紧凑的 CompactRowSet 返回，所有行共用一份列名索引 
+     * @param sql sql语句 
+     * @param param 参数 
+     * @return 查询结果 
+     */ 
+    public CompactRowSet findRowSet(String sql, Object param) { 
+        return findRowSet(sql, new Object[] { param }); 
+    } 
+
+    /** 
+     * 执行查询，结果以紧凑的 CompactRowSet 返回，所有行共用一份列名索引 
+     * 大结果集下比 find(String, Object[]) 的 List&lt;Map&gt; 占用少得多的内存，需要Map时可用 asMapList() 视图 
+     * @param sql sql语句 
+     * @param params 参数数组 
+     * @return 查询结果 
+     */ 
+    public CompactRowSet findRowSet(String sql, Object[] params) { 
+        CompactRowSet rowSet = new CompactRowSet(new String[0]); 
+        try { 
+            rowSet = query("rowSet", null, sql, CompactRowSet.HANDLER, params); 
+        } catch (SQLException e) { 
+            log.error("Error occured while attempting to query data", e); 
+        } 
+        return rowSet; 
+    } 
+
     /** 
      * 执行查询，将每行的结果保存到Bean中，然后将所有Bean保存到List中 
      * @param entityClass 类名 
@@ -180,17 +855,11 @@ public class DbUtilsTemplate {
      * @param params 参数数组 
      * @return 查询结果 
      */ 
-    @SuppressWarnings("unchecked") 
     public <T> List<T> find(Class<T> entityClass, String sql, Object[] params) { 
-    	log.info("执行查询：" + sql);
+        log.debug("执行查询：{}", sql); 
         List<T> list = new ArrayList<T>(); 
         try { 
-            queryRunner = new QueryRunner(dataSource); 
-            if (params == null) { 
-                list = (List<T>) queryRunner.query(sql, new BeanListHandler(entityClass)); 
-            } else { 
-                list = (List<T>) queryRunner.query(sql, new BeanListHandler(entityClass), params); 
-            } 
+            list = query("list", entityClass, sql, BeanRowMapper.listHandler(entityClass), params); 
         } catch (SQLException e) { 
             log.error("Error occured while attempting to query data", e); 
         }
@@ -225,20 +894,14 @@ public class DbUtilsTemplate {
      * @param params 参数数组 
      * @return 对象 
      */ 
-    @SuppressWarnings("unchecked") 
     public <T> T findFirst(Class<T> entityClass, String sql, Object[] params) { 
-        queryRunner = new QueryRunner(dataSource); 
-        Object object = null; 
+        T object = null; 
         try { 
-            if (params == null) { 
-                object = queryRunner.query(sql, new BeanHandler(entityClass)); 
-            } else { 
-                object = queryRunner.query(sql, new BeanHandler(entityClass), params); 
-            } 
+            object = query("first", entityClass, sql, BeanRowMapper.handler(entityClass), params); 
         } catch (SQLException e) { 
             log.error("Error occured while attempting to query data", e); 
         } 
-        return (T) object; 
+        return object; 
     } 
       
     /** 
@@ -268,14 +931,9 @@ public class DbUtilsTemplate {
      */ 
     @SuppressWarnings("unchecked") 
     public Map<String, Object> findFirst(String sql, Object[] params) { 
-        queryRunner = new QueryRunner(dataSource); 
         Map<String, Object> map = null; 
         try { 
-            if (params == null) { 
-                map = (Map<String, Object>) queryRunner.query(sql, new MapHandler()); 
-            } else { 
-                map = (Map<String, Object>) queryRunner.query(sql, new MapHandler(), params); 
-            } 
+            map = (Map<String, Object>) query("first", null, sql, new MapHandler(), params); 
         } catch (SQLException e) { 
             log.error("Error occured while attempting to query data", e); 
         } 
@@ -311,14 +969,9 @@ public class DbUtilsTemplate {
      * @return 结果对象 
      */ 
     public Object findBy(String sql, String columnName, Object[] params) { 
-        queryRunner = new QueryRunner(dataSource); 
         Object object = null; 
         try { 
-            if (params == null) { 
-                object = queryRunner.query(sql, new ScalarHandler(columnName)); 
-            } else { 
-                object = queryRunner.query(sql, new ScalarHandler(columnName), params); 
-            } 
+            object = query("column", columnName, sql, new ScalarHandler(columnName), params); 
         } catch (SQLException e) { 
             log.error("Error occured while attempting to query data", e); 
         } 
@@ -354,17 +1007,1413 @@ public class DbUtilsTemplate {
      * @return 结果对象 
      */ 
     public Object findBy(String sql, int columnIndex, Object[] params) { 
-        queryRunner = new QueryRunner(dataSource); 
         Object object = null; 
         try { 
-            if (params == null) { 
-                object = queryRunner.query(sql, new ScalarHandler(columnIndex)); 
-            } else { 
-                object = queryRunner.query(sql, new ScalarHandler(columnIndex), params); 
-            } 
+            object = query("column", columnIndex, sql, new ScalarHandler(columnIndex), params); 
         } catch (SQLException e) { 
             log.error("Error occured while attempting to query data", e); 
         } 
         return object; 
     } 
+
+    /** 
+     * 查询第一条记录第一列的值，直接读为long，见 {@link #findLong(String, Object[], long)} 
+     * @param sql sql语句 
+     * @param defaultValue 没有记录、值为NULL或出错时的返回值 
+     * @return 结果 
+     */ 
+    public long findLong(String sql, long defaultValue) { 
+        return findLong(sql, null, defaultValue); 
+    } 
+
+    /** 
+     * 查询第一条记录第一列的值，直接读为long，见 {@link #findLong(String, Object[], long)} 
+     * @param sql sql语句 
+     * @param param 参数 
+     * @param defaultValue 没有记录、值为NULL或出错时的返回值 
+     * @return 结果 
+     */ 
+    public long findLong(String sql, Object param, long defaultValue) { 
+        return findLong(sql, new Object[] { param }, defaultValue); 
+    } 
+
+    /** 
+     * 查询第一条记录第一列的值，直接读为long，不装箱，适合 COUNT(*)、MAX(id) 等 
+     * @param sql sql语句 
+     * @param params 参数数组 
+     * @param defaultValue 没有记录、值为NULL或出错时的返回值 
+     * @return 结果 
+     */ 
+    public long findLong(String sql, Object[] params, long defaultValue) { 
+        try { 
+            long[] value = query(sql, PrimitiveHandlers.LONG, params); 
+            return value.length == 0 ? defaultValue : value[0]; 
+        } catch (SQLException e) { 
+            log.error("Error occured while attempting to query data", e); 
+        } 
+        return defaultValue; 
+    } 
+
+    /** 
+     * 查询第一条记录第一列的值，直接读为int，见 {@link #findInt(String, Object[], int)} 
+     * @param sql sql语句 
+     * @param defaultValue 没有记录、值为NULL或出错时的返回值 
+     * @return 结果 
+     */ 
+    public int findInt(String sql, int defaultValue) { 
+        return findInt(sql, null, defaultValue); 
+    } 
+
+    /** 
+     * 查询第一条记录第一列的值，直接读为int，见 {@link #findInt(String, Object[], int)} 
+     * @param sql sql语句 
+     * @param param 参数 
+     * @param defaultValue 没有记录、值为NULL或出错时的返回值 
+     * @return 结果 
+     */ 
+    public int findInt(String sql, Object param, int defaultValue) { 
+        return findInt(sql, new Object[] { param }, defaultValue); 
+    } 
+
+    /** 
+     * 查询第一条记录第一列的值，直接读为int，不装箱，适合 COUNT(*)、MAX(id) 等 
+     * @param sql sql语句 
+     * @param params 参数数组 
+     * @param defaultValue 没有记录、值为NULL或出错时的返回值 
+     * @return 结果 
+     */ 
+    public int findInt(String sql, Object[] params, int defaultValue) { 
+        try { 
+            int[] value = query(sql, PrimitiveHandlers.INT, params); 
+            return value.length == 0 ? defaultValue : value[0]; 
+        } catch (SQLException e) { 
+            log.error("Error occured while attempting to query data", e); 
+        } 
+        return defaultValue; 
+    } 
+
+    /** 
+     * 查询第一条记录第一列的值，直接读为double，见 {@link #findDouble(String, Object[], double)} 
+     * @param sql sql语句 
+     * @param defaultValue 没有记录、值为NULL或出错时的返回值 
+     * @return 结果 
+     */ 
+    public double findDouble(String sql, double defaultValue) { 
+        return findDouble(sql, null, defaultValue); 
+    } 
+
+    /** 
+     * 查询第一条记录第一列的值，直接读为double，见 {@link #findDouble(String, Object[], double)} 
+     * @param sql sql语句 
+     * @param param 参数 
+     * @param defaultValue 没有记录、值为NULL或出错时的返回值 
+     * @return 结果 
+     */ 
+    public double findDouble(String sql, Object param, double defaultValue) { 
+        return findDouble(sql, new Object[] { param }, defaultValue); 
+    } 
+
+    /** 
+     * 查询第一条记录第一列的值，直接读为double，不装箱，适合 COUNT(*)、MAX(id) 等 
+     * @param sql sql语句 
+     * @param params 参数数组 
+     * @param defaultValue 没有记录、值为NULL或出错时的返回值 
+     * @return 结果 
+     */ 
+    public double findDouble(String sql, Object[] params, double defaultValue) { 
+        try { 
+            double[] value = query(sql, PrimitiveHandlers.DOUBLE, params); 
+            return value.length == 0 ? defaultValue : value[0]; 
+        } catch (SQLException e) { 
+            log.error("Error occured while attempting to query data", e); 
+        } 
+        return defaultValue; 
+    } 
+
+    /** 
+     * 查询所有记录第一列的值，直接读入基本类型数组，不装箱，NULL读为0，适合查询id列表 
+     * @param sql sql语句 
+     * @param params 参数数组 
+     * @return 每行一个值，出错时为空数组 
+     */ 
+    public long[] findLongColumn(String sql, Object[] params) { 
+        try { 
+            return query(sql, PrimitiveHandlers.LONG_COLUMN, params); 
+        } catch (SQLException e) { 
+            log.error("Error occured while attempting to query data", e); 
+        } 
+        return new long[0]; 
+    } 
+
+    /** 
+     * 查询所有记录第一列的值，直接读入基本类型数组，不装箱，NULL读为0，适合查询id列表 
+     * @param sql sql语句 
+     * @param params 参数数组 
+     * @return 每行一个值，出错时为空数组 
+     */ 
+    public int[] findIntColumn(String sql, Object[] params) { 
+        try { 
+            return query(sql, PrimitiveHandlers.INT_COLUMN, params); 
+        } catch (SQLException e) { 
+            log.error("Error occured while attempting to query data", e); 
+        } 
+        return new int[0]; 
+    } 
+
+    /** 
+     * 查询所有记录第一列的值，直接读入基本类型数组，不装箱，NULL读为0，适合查询id列表 
+     * @param sql sql语句 
+     * @param params 参数数组 
+     * @return 每行一个值，出错时为空数组 
+     */ 
+    public double[] findDoubleColumn(String sql, Object[] params) { 
+        try { 
+            return query(sql, PrimitiveHandlers.DOUBLE_COLUMN, params); 
+        } catch (SQLException e) { 
+            log.error("Error occured while attempting to query data", e); 
+        } 
+        return new double[0]; 
+    } 
+
+    /** 
+     * 命名参数查询，将每行的结果保存到Map中 
+     * @param sql 带命名参数（:name）的sql语句 
+     * @param source 参数来源，Map或Bean 
+     * @return 查询结果 
+     */ 
+    public List<Map<String, Object>> findNamed(String sql, Object source) { 
+        NamedSql named = namedSql(sql); 
+        return find(named.getSql(), named.bind(source)); 
+    } 
+
+    /** 
+     * 命名参数查询，将每行的结果保存到Bean中 
+     * <code> 
+     * findNamed(User.class, "SELECT * FROM user WHERE id IN (:ids) AND user_name = :user_name", params); 
+     * </code> 
+     * @param entityClass 类名 
+     * @param sql 带命名参数（:name）的sql语句 
+     * @param source 参数来源，Map或Bean 
+     * @return 查询结果 
+     */ 
+    public <T> List<T> findNamed(Class<T> entityClass, String sql, Object source) { 
+        NamedSql named = namedSql(sql); 
+        return find(entityClass, named.getSql(), named.bind(source)); 
+    } 
+
+    /** 
+     * 命名参数查询，取第一条记录封装成Bean 
+     * @param entityClass 类名 
+     * @param sql 带命名参数（:name）的sql语句 
+     * @param source 参数来源，Map或Bean 
+     * @return 对象，没有记录时为null 
+     */ 
+    public <T> T findFirstNamed(Class<T> entityClass, String sql, Object source) { 
+        NamedSql named = namedSql(sql); 
+        return findFirst(entityClass, named.getSql(), named.bind(source)); 
+    } 
+
+    /** 
+     * 命名参数更新 
+     * <code> 
+     * updateNamed("UPDATE user SET pass_word = :pass_word WHERE id = :id", user); 
+     * </code> 
+     * @param sql 带命名参数（:name）的sql语句 
+     * @param source 参数来源，Map或Bean 
+     * @return 受影响的行数 
+     */ 
+    public int updateNamed(String sql, Object source) { 
+        NamedSql named = namedSql(sql); 
+        return update(named.getSql(), named.bind(source)); 
+    } 
+
+    /** 
+     * 取得解析后的命名参数sql，每个语句只解析一次 
+     * @param sql 带命名参数（:name）的sql语句 
+     * @return 解析结果 
+     */ 
+    public NamedSql namedSql(String sql) { 
+        NamedSql named = namedSqlCache.get(sql); 
+        if (named == null) { 
+            if (namedSqlCache.size() >= NAMED_SQL_CACHE_LIMIT) { 
+                namedSqlCache.clear(); 
+            } 
+            named = NamedSql.parse(sql); 
+            namedSqlCache.put(sql, named); 
+        } 
+        return named; 
+    } 
+
+    /** 
+     * 创建按主键批量加载的加载器，使用默认的时间窗口和批次大小 
+     * @param entityClass 类名 
+     * @param sql 查询语句，有且只有一个位于 IN (?) 中的占位符，如 SELECT * FROM user WHERE id IN (?) 
+     * @param keyOf 从结果中取出主键，如 User::getId 
+     * @return 加载器，应长期持有并在多个调用方之间共享 
+     */ 
+    public <K, T> BatchLoader<K, T> batchLoader(Class<T> entityClass, String sql, Function<? super T, ? extends K> keyOf) { 
+        return new BatchLoader<K, T>(this, entityClass, sql, keyOf, BatchLoader.DEFAULT_WINDOW_MILLIS, 
+                BatchLoader.DEFAULT_MAX_BATCH_SIZE); 
+    } 
+
+    /** 
+     * 创建组提交写入器，使用默认的时间窗口和批次大小 
+     * @param sql 单行的写入语句，如 INSERT INTO user (user_name, pass_word) VALUES (?, ?) 
+     * @return 写入器，应长期持有并在多个调用方之间共享 
+     */ 
+    public GroupCommitWriter groupCommitWriter(String sql) { 
+        return new GroupCommitWriter(this, sql, GroupCommitWriter.DEFAULT_WINDOW_MILLIS, GroupCommitWriter.DEFAULT_MAX_BATCH_SIZE); 
+    } 
+
+    /** 
+     * 创建后写缓冲，使用默认的写库间隔和容量 
+     * @param sql 更新语句，最后一个占位符是主键，如 UPDATE user SET login_count = login_count + ? WHERE id = ? 
+     * @param mode 同一主键多次写入的合并方式 
+     * @return 缓冲，应长期持有；未关闭的缓冲在模板销毁时关闭，写出剩余数据 
+     */ 
+    public <K> WriteBehindBuffer<K> writeBehindBuffer(String sql, WriteBehindBuffer.Mode mode) { 
+        WriteBehindBuffer<K> buffer = new WriteBehindBuffer<K>(this, sql, mode, WriteBehindBuffer.DEFAULT_INTERVAL_MILLIS, 
+                WriteBehindBuffer.DEFAULT_MAX_KEYS); 
+        writeBehindBuffers.add(buffer); 
+        return buffer; 
+    } 
+
+    void writeBehindBufferClosed(WriteBehindBuffer<?> buffer) { 
+        writeBehindBuffers.remove(buffer); 
+    } 
+
+    /** 
+     * 组提交、批量加载、后写缓冲共用的定时线程，同名的只创建一个 
+     * @param name 线程名 
+     * @return 单线程的定时线程池 
+     * @throws RejectedExecutionException 模板已销毁 
+     */ 
+    synchronized ScheduledExecutorService batchTimer(final String name) { 
+        if (destroyed) { 
+            throw new RejectedExecutionException("DbUtilsTemplate has been destroyed"); 
+        } 
+        ScheduledExecutorService timer = batchTimers.get(name); 
+        if (timer == null) { 
+            timer = new ScheduledThreadPoolExecutor(1, r -> { 
+                Thread thread = new Thread(r, name); 
+                thread.setDaemon(true); 
+                return thread; 
+            }); 
+            batchTimers.put(name, timer); 
+        } 
+        return timer; 
+    } 
+
+    /** 
+     * 组提交、批量加载共用的工作线程池，同名的只创建一个，见 {@link #newWorkerPool(String, int, int)} 
+     * @throws RejectedExecutionException 模板已销毁 
+     */ 
+    synchronized ExecutorService batchWorkers(String name, int poolSize, int queueSize) { 
+        if (destroyed) { 
+            throw new RejectedExecutionException("DbUtilsTemplate has been destroyed"); 
+        } 
+        ExecutorService workers = batchWorkers.get(name); 
+        if (workers == null) { 
+            workers = newWorkerPool(name, poolSize, queueSize); 
+            batchWorkers.put(name, workers); 
+        } 
+        return workers; 
+    } 
+
+    /** 
+     * Spring容器关闭时关闭尚未关闭的后写缓冲，同步写出剩余数据；再关闭组提交、批量加载和并行扫描的线程池： 
+     * 时间窗口未到的批次照常发出，进行中的批次执行完，各最多等待 SHUTDOWN_WAIT_SECONDS 秒， 
+     * 之后才发出的批次以 RejectedExecutionException 异常完成，超时未发出的批次被丢弃 
+     */ 
+    @Override 
+    public void destroy() { 
+        for (WriteBehindBuffer<?> buffer : new ArrayList<WriteBehindBuffer<?>>(writeBehindBuffers)) { 
+            if (!buffer.close()) { 
+                log.error("Error occured while attempting to flush write-behind buffer on shutdown, {} rows lost", buffer.size()); 
+            } 
+        } 
+        List<ExecutorService> timers; 
+        List<ExecutorService> workers; 
+        synchronized (this) { 
+            destroyed = true; 
+            timers = new ArrayList<ExecutorService>(batchTimers.values()); 
+            workers = new ArrayList<ExecutorService>(batchWorkers.values()); 
+        } 
+        ExecutorService scans = scanExecutor; 
+        if (scans != null) { 
+            workers.add(scans); 
+        } 
+        // 先等定时线程发出剩余批次，再等工作线程执行完 
+        shutdown(timers); 
+        shutdown(workers); 
+    } 
+
+    private void shutdown(List<ExecutorService> executors) { 
+        for (ExecutorService executor : executors) { 
+            executor.shutdown(); 
+        } 
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_WAIT_SECONDS); 
+        try { 
+            for (ExecutorService executor : executors) { 
+                if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) { 
+                    int dropped = executor.shutdownNow().size(); 
+                    log.error("Error occured while attempting to shut down batch executor, {} pending tasks dropped", dropped); 
+                } 
+            } 
+        } catch (InterruptedException e) { 
+            Thread.currentThread().interrupt(); 
+            for (ExecutorService executor : executors) { 
+                executor.shutdownNow(); 
+            } 
+        } 
+    } 
+
+    /** 
+     * 在一个事务中执行回调，回调中本类的所有调用使用同一个连接，正常返回后统一提交一次 
+     * 回调中出错（包括本类的SQL错误，在事务中会抛出 DataAccessException 而不是返回默认值）时回滚 
+     * 与 @Transactional 及其他使用同一数据源的 DataSourceTransactionManager 事务相互兼容，已在事务中时加入该事务 
+     * <code> 
+     * dbUtilsTemplate.inTransaction(status -&gt; { 
+     *     dbUtilsTemplate.update("update account set balance = balance - ? where id = ?", new Object[] { 100, 1 }); 
+     *     dbUtilsTemplate.update("update account set balance = balance + ? where id = ?", new Object[] { 100, 2 }); 
+     *     return null; 
+     * }); 
+     * </code> 
+     * @param action 事务中执行的操作，可以调用 status.setRollbackOnly() 只回滚不抛异常 
+     * @return 回调的返回值 
+     */ 
+    public <T> T inTransaction(TransactionCallback<T> action) { 
+        TransactionTemplate template = this.transactionTemplate; 
+        if (template == null) { 
+            template = new TransactionTemplate(getTransactionManager()); 
+            this.transactionTemplate = template; 
+        } 
+        return template.execute(action); 
+    } 
+
+    /** 
+     * 一次往返执行批次中登记的所有查询，结果通过登记时返回的 QueryBatch.Result 获取 
+     * 所有语句拼成一条多语句SQL在同一个连接上执行，需要连接串带 allowMultiQueries=true 并开启 spring.datasource.multiStatementAllow 
+     * @param batch 查询批次 
+     * 每条语句的 Collection 参数与 find 一样按 IN 列表展开 
+     * @return 是否全部执行成功，失败时各结果均为登记时说明的默认值 
+     */ 
+    public boolean executeBatch(final QueryBatch batch) { 
+        if (batch.size() == 0) { 
+            return true; 
+        } 
+        StringBuilder joined = new StringBuilder(); 
+        final List<Object> params = new ArrayList<Object>(); 
+        for (QueryBatch.Result<?> result : batch.getResults()) { 
+            BoundSql bound = bind(result.getSql(), result.getParams()); 
+            if (joined.length() > 0) { 
+                joined.append(";\n"); 
+            } 
+            joined.append(bound.sql); 
+            if (bound.params != null) { 
+                Collections.addAll(params, bound.params); 
+            } 
+        } 
+        final String sql = joined.toString(); 
+        boolean success = false; 
+        try { 
+            execute(sql, true, conn -> { 
+                PreparedStatement stmt = null; 
+                long rows = 0; 
+                try { 
+                    stmt = conn.prepareStatement(sql); 
+                    statementFiller.fillStatement(stmt, params.toArray()); 
+                    boolean isResultSet = stmt.execute(); 
+                    for (QueryBatch.Result<?> result : batch.getResults()) { 
+                        // 跳过不返回结果集的语句 
+                        while (!isResultSet) { 
+                            if (stmt.getUpdateCount() == -1) { 
+                                throw new SQLException("Expected " + batch.size() + " result sets from batch"); 
+                            } 
+                            isResultSet = stmt.getMoreResults(); 
+                        } 
+                        ResultSet rs = stmt.getResultSet(); 
+                        try { 
+                            result.handle(rs); 
+                        } finally { 
+                            DbUtils.closeQuietly(rs); 
+                        } 
+                        rows += rowCount(result.get()); 
+                        isResultSet = stmt.getMoreResults(); 
+                    } 
+                } finally { 
+                    DbUtils.closeQuietly(stmt); 
+                } 
+                return rows; 
+            }, Long::longValue); 
+            success = true; 
+        } catch (SQLException e) { 
+            log.error("Error occured while attempting to query batch", e); 
+        } finally { 
+            if (!success) { 
+                // 出错前已处理的结果集也作废，不留下部分结果 
+                for (QueryBatch.Result<?> result : batch.getResults()) { 
+                    result.reset(); 
+                } 
+            } 
+        } 
+        return success; 
+    } 
+
+    /** 
+     * 键集（seek）分页查询，不统计总数 
+     * @see #findPage(Class, String, String, Object, int, Object[], boolean) 
+     */ 
+    public <T> Page<T> findPage(Class<T> entityClass, String sql, String keyColumn, Object afterKey, int pageSize, Object[] params) { 
+        return findPage(entityClass, sql, keyColumn, afterKey, pageSize, params, false); 
+    } 
+
+    /** 
+     * 键集（seek）分页查询：按 keyColumn 升序，从 afterKey 之后取 pageSize 行 
+     * 条件是 keyColumn &gt; afterKey 而不是 OFFSET，keyColumn 有索引时翻到任何一页的代价都和第一页相同 
+     * <code> 
+     * Page&lt;User&gt; page = findPage(User.class, "SELECT * FROM user", "id", null, 20, null, true); 
+     * Page&lt;User&gt; next = findPage(User.class, "SELECT * FROM user", "id", page.getNextKey(), 20, null, false); 
+     * </code> 
+     * @param entityClass 类名 
+     * @param sql 查询语句，可以带 WHERE 条件，不能带 GROUP BY、HAVING、ORDER BY、LIMIT、UNION 
+     * @param keyColumn 分页键列，须唯一且有索引，Bean中须有同名（忽略大小写）的属性 
+     * @param afterKey 上一页的 nextKey，第一页传null 
+     * @param pageSize 每页行数，须大于0 
+     * @param params 参数数组 
+     * @param withTotal 是否同时返回总行数（见 {@link #findCount(String, Object[])}，有缓存） 
+     * @return 一页数据 
+     * @throws IllegalArgumentException pageSize 不大于0，或sql带有不支持的子句 
+     */ 
+    public <T> Page<T> findPage(Class<T> entityClass, String sql, String keyColumn, Object afterKey, int pageSize, Object[] params, boolean withTotal) { 
+        if (pageSize < 1) { 
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize); 
+        } 
+        checkConditionable(sql); 
+        StringBuilder pageSql = new StringBuilder(sql.length() + keyColumn.length() * 2 + 40); 
+        List<Object> pageParams = new ArrayList<Object>(); 
+        if (params != null) { 
+            pageParams.addAll(Arrays.asList(params)); 
+        } 
+        if (afterKey == null) { 
+            pageSql.append(sql); 
+        } else { 
+            pageSql.append(withCondition(sql, keyColumn + " > ?")); 
+            pageParams.add(afterKey); 
+        } 
+        // 多取一行用来判断是否还有下一页 
+        pageSql.append(" ORDER BY ").append(keyColumn).append(" LIMIT ?"); 
+        pageParams.add(pageSize + 1); 
+
+        List<T> items = find(entityClass, pageSql.toString(), pageParams.toArray()); 
+        Object nextKey = null; 
+        if (items.size() > pageSize) { 
+            items = new ArrayList<T>(items.subList(0, pageSize)); 
+            nextKey = readProperty(items.get(pageSize - 1), keyColumn); 
+        } 
+        long total = withTotal ? findCount(sql, params) : -1; 
+        return new Page<T>(items, nextKey, total); 
+    } 
+
+    /** 
+     * 统计查询结果的总行数，结果按 sql+参数 缓存 countCacheMillis 毫秒，避免每次翻页都执行 COUNT(*) 
+     * 通过本类对所涉及表的写入会使缓存的总数失效；其他进程或绕过本类的写入最多滞后 countCacheMillis 毫秒 
+     * @param sql 查询语句 
+     * @param params 参数数组 
+     * @return 总行数，出错时返回-1 
+     */ 
+    public long findCount(String sql, Object[] params) { 
+        QueryKey key = new QueryKey("count", null, sql, params); 
+        Set<String> tables = tablesOf(sql); 
+        long now = System.currentTimeMillis(); 
+        long epoch = countEpoch.get(); 
+        long version = countVersion(tables); 
+        long[] cached = countCache.get(key); 
+        if (cached != null && cached[1] > now && cached[2] == version && cached[3] == epoch) { 
+            return cached[0]; 
+        } 
+        long count = -1; 
+        try { 
+            long[] number = query("SELECT COUNT(*) FROM (" + sql + ") count_t", PrimitiveHandlers.LONG, params); 
+            count = number.length == 0 ? 0 : number[0]; 
+        } catch (SQLException e) { 
+            log.error("Error occured while attempting to count data", e); 
+            return count; 
+        } 
+        if (countCacheMillis > 0) { 
+            if (countCache.size() >= COUNT_CACHE_LIMIT) { 
+                countCache.clear(); 
+            } 
+            countCache.put(key, new long[] { count, now + countCacheMillis, version, epoch }); 
+        } 
+        return count; 
+    } 
+
+    /** 
+     * 读取Bean中与列名同名（忽略大小写、去掉表别名和反引号）的属性值 
+     */ 
+    private Object readProperty(Object bean, String column) { 
+        String name = column.substring(column.lastIndexOf('.') + 1).replace("`", ""); 
+        PropertyDescriptor prop = property(bean.getClass(), name, false); 
+        try { 
+            return prop.getReadMethod().invoke(bean); 
+        } catch (ReflectiveOperationException e) { 
+            throw new IllegalArgumentException("Cannot read " + name + " of " + bean.getClass().getName(), e); 
+        } 
+    } 
+
+    /** 
+     * Bean中与 name 同名（忽略大小写）的可读或可写属性 
+     */ 
+    private static PropertyDescriptor property(Class<?> type, String name, boolean write) { 
+        try { 
+            for (PropertyDescriptor prop : Introspector.getBeanInfo(type).getPropertyDescriptors()) { 
+                if ((write ? prop.getWriteMethod() : prop.getReadMethod()) != null && prop.getName().equalsIgnoreCase(name)) { 
+                    return prop; 
+                } 
+            } 
+        } catch (IntrospectionException e) { 
+            throw new IllegalArgumentException("Cannot introspect " + type.getName(), e); 
+        } 
+        throw new IllegalArgumentException(type.getName() + " has no " + (write ? "writable" : "readable") + " property " + name); 
+    } 
+
+    /** 
+     * 所有查询的统一入口：有从库时路由到从库，否则走主库 
+     * @param sql sql语句 
+     * @param rsh 结果集处理器 
+     * @param params 参数数组，可以为null 
+     * @return 处理结果 
+     * @throws SQLException 
+     */ 
+    private <T> T query(String sql, final ResultSetHandler<T> rsh, Object[] params) throws SQLException { 
+        final BoundSql bound = bind(sql, params); 
+        return execute(bound.sql, true, conn -> bound.params == null ? queryRunner.query(conn, bound.sql, rsh) 
+                : queryRunner.query(conn, bound.sql, rsh, bound.params), DbUtilsTemplate::rowCount); 
+    } 
+
+    /** 
+     * 展开 Collection 类型的参数：对应的 ? 展开为多个占位符，个数按元素个数向上取到2的幂次（见 SqlUtil.bucketSize）， 
+     * 不足的用最后一个元素补齐，使不同长度的列表只产生少数几种语句，预编译语句缓存（PSCache、服务端预编译）能够命中 
+     * 空集合展开为一个 NULL，IN (NULL) 不匹配任何行 
+     * <code> 
+     * find(User.class, "SELECT * FROM user WHERE id IN (?) AND status = ?", new Object[] { ids, 1 }); 
+     * </code> 
+     */ 
+    private static BoundSql bind(String sql, Object[] params) { 
+        int first = -1; 
+        if (params != null) { 
+            for (int i = 0; i < params.length; i++) { 
+                if (params[i] instanceof Collection) { 
+                    first = i; 
+                    break; 
+                } 
+            } 
+        } 
+        if (first < 0) { 
+            return new BoundSql(sql, params); 
+        } 
+        List<Object> expanded = new ArrayList<Object>(params.length + 16); 
+        // 从后往前展开，前面占位符的位置不受影响 
+        String bound = sql; 
+        for (int i = params.length - 1; i >= first; i--) { 
+            if (!(params[i] instanceof Collection)) { 
+                continue; 
+            } 
+            int pos = SqlUtil.indexOfPlaceholder(bound, i); 
+            if (pos < 0) { 
+                throw new IllegalArgumentException("No placeholder for collection parameter " + i + ": " + sql); 
+            } 
+            int count = SqlUtil.bucketSize(((Collection<?>) params[i]).size(), MAX_IN_BUCKET); 
+            bound = SqlUtil.expandPlaceholder(bound, pos, count); 
+        } 
+        for (Object param : params) { 
+            if (!(param instanceof Collection)) { 
+                expanded.add(param); 
+                continue; 
+            } 
+            Collection<?> values = (Collection<?>) param; 
+            Object last = null; 
+            for (Object value : values) { 
+                expanded.add(value); 
+                last = value; 
+            } 
+            for (int n = SqlUtil.bucketSize(values.size(), MAX_IN_BUCKET) - values.size(); n > 0; n--) { 
+                expanded.add(last); 
+            } 
+        } 
+        return new BoundSql(bound, expanded.toArray()); 
+    } 
+
+    /** 
+     * 展开集合参数后的sql和参数 
+     */ 
+    private static final class BoundSql { 
+
+        final String sql; 
+        final Object[] params; 
+
+        BoundSql(String sql, Object[] params) { 
+            this.sql = sql; 
+            this.params = params; 
+        } 
+    } 
+
+    /** 
+     * 开启缓存时先查缓存；开启合并时，并发的相同查询（sql、参数、结果类型都相同）只执行一次，共享结果 
+     * @param kind 结果类型 
+     * @param type Bean类型或列名等附加区分，可以为null 
+     * @param sql sql语句 
+     * @param rsh 结果集处理器 
+     * @param params 参数数组，可以为null 
+     * @return 处理结果 
+     * @throws SQLException 
+     */ 
+    private <T> T query(String kind, Object type, final String sql, final ResultSetHandler<T> rsh, final Object[] params) throws SQLException { 
+        SingleFlight flight = this.singleFlight; 
+        QueryCache cache = this.queryCache; 
+        // 事务中可能读到本事务未提交的数据，不合并也不缓存 
+        if ((flight == null && cache == null) || isTransactional()) { 
+            return query(sql, rsh, params); 
+        } 
+        QueryKey key = new QueryKey(kind, type, sql, params); 
+        Set<String> tables = cache == null ? null : tablesOf(sql); 
+        if (tables == null || tables.isEmpty()) { 
+            return flight == null ? query(sql, rsh, params) : flight.execute(key, () -> query(sql, rsh, params)); 
+        } 
+        @SuppressWarnings("unchecked") 
+        T cached = (T) cache.get(key, tables); 
+        if (cached != null) { 
+            return cached; 
+        } 
+        long version = cache.version(tables); 
+        T result = flight == null ? query(sql, rsh, params) : flight.execute(key, () -> query(sql, rsh, params)); 
+        // 写后失效的版本号检查挡不住从库：失效之后从库可能还没复制到这次写入 
+        if (result != null && !(replicaRouter != null && writtenWithin(tables, replicaLagMillis))) { 
+            cache.put(key, tables, result, version); 
+        } 
+        return result; 
+    } 
+
+    /** 
+     * 记录表的写入时间，供从库读取的结果决定是否缓存 
+     */ 
+    private void recordWrite(Set<String> tables) { 
+        if (replicaRouter == null) { 
+            return; 
+        } 
+        if (tableWrites.size() >= TABLES_CACHE_LIMIT) { 
+            tableWrites.clear(); 
+        } 
+        Long now = System.currentTimeMillis(); 
+        if (tables.isEmpty()) { 
+            tableWrites.put(ANY_TABLE, now); 
+        } 
+        for (String table : tables) { 
+            tableWrites.put(table, now); 
+        } 
+    } 
+
+    /** 
+     * 这些表在最近 millis 毫秒内是否被写过 
+     */ 
+    private boolean writtenWithin(Set<String> tables, long millis) { 
+        long since = System.currentTimeMillis() - millis; 
+        Long any = tableWrites.get(ANY_TABLE); 
+        if (any != null && any >= since) { 
+            return true; 
+        } 
+        for (String table : tables) { 
+            Long written = tableWrites.get(table); 
+            if (written != null && written >= since) { 
+                return true; 
+            } 
+        } 
+        return false; 
+    } 
+
+    /** 
+     * sql语句涉及的表名，结果按语句缓存 
+     */ 
+    private Set<String> tablesOf(String sql) { 
+        Set<String> tables = tablesCache.get(sql); 
+        if (tables == null) { 
+            if (tablesCache.size() >= TABLES_CACHE_LIMIT) { 
+                tablesCache.clear(); 
+            } 
+            tables = Collections.unmodifiableSet(SqlUtil.tables(sql)); 
+            tablesCache.put(sql, tables); 
+        } 
+        return tables; 
+    } 
+
+    /** 
+     * 取得连接并执行操作，读操作可路由到从库；分别统计等待连接和执行的耗时 
+     * @param sql 用于统计的sql语句 
+     * @param read 是否只读 
+     * @param action 在连接上执行的操作 
+     * @param rows 从结果中取出行数，用于统计 
+     * @return 操作结果 
+     * @throws SQLException 
+     */ 
+    private <T> T execute(String sql, boolean read, ConnectionCallback<T> action, ToLongFunction<? super T> rows) throws SQLException { 
+        boolean transactional = isTransactional(); 
+        StatementCacheTuner tuner = this.statementCacheTuner; 
+        if (tuner != null) { 
+            tuner.record(sql); 
+        } 
+        // 事务中的读也走主库上的事务连接，能读到本事务未提交的写入 
+        ReplicaRouter.Replica replica = read && !transactional ? acquireReplica() : null; 
+        long start = System.nanoTime(); 
+        long acquired = 0; 
+        Connection conn = null; 
+        T result = null; 
+        boolean failed = true; 
+        try { 
+            conn = replica == null ? DataSourceUtils.doGetConnection(dataSource) : replica.getDataSource().getConnection(); 
+            acquired = System.nanoTime(); 
+            result = action.doInConnection(conn); 
+            failed = false; 
+            return result; 
+        } catch (SQLException e) { 
+            if (transactional) { 
+                // 抛出非受检异常让事务回滚，而不是像事务外那样记录日志后返回默认值 
+                throw translate(sql, e); 
+            } 
+            throw e; 
+        } finally { 
+            if (replica == null) { 
+                DataSourceUtils.releaseConnection(conn, dataSource); 
+            } else { 
+                DbUtils.closeQuietly(conn); 
+                releaseReplica(replica); 
+            } 
+            if (!read && (this.queryCache != null || countCacheMillis > 0)) { 
+                invalidateAfterWrite(sql, transactional); 
+            } 
+            SqlMetrics metrics = this.sqlMetrics; 
+            if (metrics != null) { 
+                long end = System.nanoTime(); 
+                if (acquired == 0) { 
+                    acquired = end; 
+                } 
+                metrics.record(sql, acquired - start, end - acquired, result == null ? 0 : rows.applyAsLong(result), failed); 
+            } 
+        } 
+    } 
+
+    /** 
+     * 写操作（无论成功与否，批量更新可能已部分提交）使相关表的查询缓存和分页总数缓存失效；事务中推迟到事务结束后 
+     */ 
+    private void invalidateAfterWrite(String sql, boolean transactional) { 
+        final Set<String> tables = tablesOf(sql); 
+        if (transactional && TransactionSynchronizationManager.isSynchronizationActive()) { 
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() { 
+                @Override 
+                public void afterCompletion(int status) { 
+                    invalidate(tables); 
+                } 
+            }); 
+        } else { 
+            invalidate(tables); 
+        } 
+    } 
+
+    private void invalidate(Set<String> tables) { 
+        QueryCache cache = queryCache; 
+        if (cache != null) { 
+            cache.invalidate(tables); 
+            recordWrite(tables); 
+        } 
+        if (countVersions.size() >= TABLES_CACHE_LIMIT) { 
+            countEpoch.incrementAndGet(); 
+            countVersions.clear(); 
+        } 
+        if (tables.isEmpty()) { 
+            countVersions.computeIfAbsent(ANY_TABLE, t -> new AtomicLong()).incrementAndGet(); 
+        } 
+        for (String table : tables) { 
+            countVersions.computeIfAbsent(table, t -> new AtomicLong()).incrementAndGet(); 
+        } 
+    } 
+
+    /** 
+     * 这些表（及识别不出表名的写入）的写入次数之和，任一表被写入后都会变化 
+     */ 
+    private long countVersion(Set<String> tables) { 
+        AtomicLong any = countVersions.get(ANY_TABLE); 
+        long version = any == null ? 0 : any.get(); 
+        for (String table : tables) { 
+            AtomicLong v = countVersions.get(table); 
+            if (v != null) { 
+                version += v.get(); 
+            } 
+        } 
+        return version; 
+    } 
+
+    /** 
+     * 当前线程是否在主库的Spring事务中（inTransaction、@Transactional 或其他使用同一数据源的事务管理器） 
+     */ 
+    private boolean isTransactional() { 
+        return TransactionSynchronizationManager.isActualTransactionActive() 
+                && TransactionSynchronizationManager.hasResource(dataSource); 
+    } 
+
+    private DataAccessException translate(String sql, SQLException e) { 
+        if (exceptionTranslator == null) { 
+            exceptionTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource); 
+        } 
+        DataAccessException translated = exceptionTranslator.translate("DbUtilsTemplate", sql, e); 
+        return translated != null ? translated : new UncategorizedSQLException("DbUtilsTemplate", sql, e); 
+    } 
+
+    /** 
+     * 查询结果的行数：集合和基本类型数组按元素个数，单个对象按1行 
+     */ 
+    private static long rowCount(Object result) { 
+        if (result instanceof Collection) { 
+            return ((Collection<?>) result).size(); 
+        } else if (result instanceof CompactRowSet) { 
+            return ((CompactRowSet) result).size(); 
+        } else if (result instanceof long[]) { 
+            return ((long[]) result).length; 
+        } else if (result instanceof int[]) { 
+            return ((int[]) result).length; 
+        } else if (result instanceof double[]) { 
+            return ((double[]) result).length; 
+        } 
+        return result == null ? 0 : 1; 
+    } 
+
+    private static long sum(int[] counts) { 
+        long total = 0; 
+        for (int count : counts) { 
+            if (count > 0) { 
+                total += count; 
+            } 
+        } 
+        return total; 
+    } 
+
+    private ReplicaRouter.Replica acquireReplica() { 
+        return replicaRouter == null ? null : replicaRouter.acquire(); 
+    } 
+
+    private void releaseReplica(ReplicaRouter.Replica replica) { 
+        if (replica != null) { 
+            replicaRouter.release(replica); 
+        } 
+    } 
+
+    /** 
+     * 流式查询，逐行回调，结果集不会整体加载到内存中 
+     * @param sql sql语句 
+     * @param handler 逐行回调 
+     * @return 处理的行数 
+     */ 
+    public long stream(String sql, RowCallbackHandler handler) { 
+        return stream(sql, null, handler); 
+    } 
+
+    /** 
+     * 流式查询，逐行回调，结果集不会整体加载到内存中 
+     * @param sql sql语句 
+     * @param param 参数 
+     * @param handler 逐行回调 
+     * @return 处理的行数 
+     */ 
+    public long stream(String sql, Object param, RowCallbackHandler handler) { 
+        return stream(sql, new Object[] { param }, handler); 
+    } 
+
+    /** 
+     * 流式查询，逐行回调，结果集不会整体加载到内存中 
+     * 使用只进、只读游标，并按 streamFetchSize 设置fetchSize，回调结束前连接一直被占用 
+     * @param sql sql语句 
+     * @param params 参数数组 
+     * @param handler 逐行回调 
+     * @return 处理的行数 
+     */ 
+    public long stream(final String sql, final Object[] params, final RowCallbackHandler handler) { 
+        try { 
+            return doStream(sql, params, handler); 
+        } catch (SQLException e) { 
+            log.error("Error occured while attempting to stream data", e); 
+        } 
+        return 0; 
+    } 
+
+    private long doStream(String sql, Object[] params, final RowCallbackHandler handler) throws SQLException { 
+        final BoundSql bound = bind(sql, params); 
+        return execute(bound.sql, true, conn -> { 
+            PreparedStatement stmt = null; 
+            ResultSet rs = null; 
+            long rows = 0; 
+            try { 
+                stmt = conn.prepareStatement(bound.sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY); 
+                stmt.setFetchSize(streamFetchSize); 
+                if (bound.params != null) { 
+                    statementFiller.fillStatement(stmt, bound.params); 
+                } 
+                rs = stmt.executeQuery(); 
+                while (rs.next()) { 
+                    handler.processRow(rs); 
+                    rows++; 
+                } 
+            } finally { 
+                DbUtils.closeQuietly(null, stmt, rs); 
+            } 
+            return rows; 
+        }, Long::longValue); 
+    } 
+
+    /** 
+     * 流式查询，将每行的结果保存到Bean中后逐个回调 
+     * @param entityClass 类名 
+     * @param sql sql语句 
+     * @param params 参数数组 
+     * @param action 逐个Bean的回调 
+     * @return 处理的行数 
+     */ 
+    public <T> long stream(final Class<T> entityClass, String sql, Object[] params, final Consumer<? super T> action) { 
+        return stream(sql, params, beanCallback(entityClass, action)); 
+    } 
+
+    /** 
+     * 把每行封装成Bean后回调，处理器内缓存了列映射，只能用于一个结果集 
+     */ 
+    private static <T> RowCallbackHandler beanCallback(final Class<T> entityClass, final Consumer<? super T> action) { 
+        return new RowCallbackHandler() { 
+            private BeanRowMapper<T> mapper; 
+
+            @Override 
+            public void processRow(ResultSet rs) throws SQLException { 
+                if (mapper == null) { 
+                    mapper = BeanRowMapper.forResultSet(entityClass, rs); 
+                } 
+                action.accept(mapper.mapRow(rs)); 
+            } 
+        }; 
+    } 
+
+    /** 
+     * 并行扫描：按整数主键的取值范围把查询切成若干段，每段在单独的连接上流式查询，逐行回调 
+     * 并行度不超过连接池（有从库时为所有从库）当前空闲的连接数，至少为1；最后一段在调用线程中执行， 
+     * 其余各段在扫描专用线程池中执行，线程池已满时也在调用线程中执行 
+     * sql 只能是单表的 SELECT ... FROM ... [WHERE ...]，不能带 GROUP BY、HAVING、ORDER BY、LIMIT、UNION（抛出 IllegalArgumentException） 
+     * @param sql sql语句 
+     * @param params 参数数组 
+     * @param keyColumn 整数类型的主键列 
+     * @param parallelism 期望的并行度 
+     * @param handler 逐行回调，会被多个线程同时调用，必须线程安全 
+     * @return 处理的总行数，出错时返回-1（其他段可能已部分处理） 
+     */ 
+    public long parallelScan(String sql, Object[] params, String keyColumn, int parallelism, final RowCallbackHandler handler) { 
+        return parallelScan(sql, params, keyColumn, parallelism, () -> handler); 
+    } 
+
+    /** 
+     * 并行扫描，每行封装成Bean后回调，见 {@link #parallelScan(String, Object[], String, int, RowCallbackHandler)} 
+     * @param entityClass 类名 
+     * @param sql sql语句 
+     * @param params 参数数组 
+     * @param keyColumn 整数类型的主键列 
+     * @param parallelism 期望的并行度 
+     * @param action 逐个Bean的回调，会被多个线程同时调用，必须线程安全 
+     * @return 处理的总行数，出错时返回-1（其他段可能已部分处理） 
+     */ 
+    public <T> long parallelScan(final Class<T> entityClass, String sql, Object[] params, String keyColumn, int parallelism, 
+            final Consumer<? super T> action) { 
+        return parallelScan(sql, params, keyColumn, parallelism, () -> beanCallback(entityClass, action)); 
+    } 
+
+    private long parallelScan(String sql, Object[] params, String keyColumn, int parallelism, 
+            Supplier<RowCallbackHandler> handlers) { 
+        checkConditionable(sql); 
+        int from = SqlUtil.indexOfTopLevelKeyword(sql, "FROM", 0); 
+        if (from < 0) { 
+            throw new IllegalArgumentException("Cannot scan without FROM: " + sql); 
+        } 
+        long[] range; 
+        try { 
+            range = query("SELECT MIN(" + keyColumn + "), MAX(" + keyColumn + ") " + sql.substring(from), 
+                    rs -> rs.next() && rs.getObject(1) != null ? new long[] { rs.getLong(1), rs.getLong(2) } : null, params); 
+        } catch (SQLException e) { 
+            log.error("Error occured while attempting to scan data", e); 
+            return -1; 
+        } 
+        if (range == null) { 
+            return 0; 
+        } 
+        long min = range[0]; 
+        long max = range[1]; 
+        int partitions = (int) Math.max(1, Math.min(Math.min(parallelism, readHeadroom()), max - min + 1)); 
+        // 按 [lo, hi] 闭区间切分，最后一段包含 max 
+        long step = (max - min) / partitions + 1; 
+        String partSql = withCondition(sql, keyColumn + " >= ? AND " + keyColumn + " <= ?"); 
+        List<CompletableFuture<Long>> futures = new ArrayList<CompletableFuture<Long>>(partitions); 
+        for (int i = 0; i < partitions; i++) { 
+            long lo = min + step * i; 
+            if (lo > max) { 
+                break; 
+            } 
+            long hi = i == partitions - 1 ? max : Math.min(max, lo + step - 1); 
+            final Object[] partParams = appendParams(params, lo, hi); 
+            final RowCallbackHandler handler = handlers.get(); 
+            Supplier<Long> scan = () -> { 
+                try { 
+                    return doStream(partSql, partParams, handler); 
+                } catch (SQLException e) { 
+                    throw new CompletionException(e); 
+                } 
+            }; 
+            CompletableFuture<Long> future = null; 
+            if (hi < max) { 
+                try { 
+                    future = CompletableFuture.supplyAsync(scan, getScanExecutor()); 
+                } catch (RejectedExecutionException e) { 
+                    // 线程池已满，下面在调用线程中执行 
+                } 
+            } 
+            if (future == null) { 
+                future = new CompletableFuture<Long>(); 
+                try { 
+                    future.complete(scan.get()); 
+                } catch (CompletionException e) { 
+                    future.completeExceptionally(e); 
+                } 
+            } 
+            futures.add(future); 
+        } 
+        long rows = 0; 
+        boolean failed = false; 
+        for (CompletableFuture<Long> future : futures) { 
+            try { 
+                rows += future.join(); 
+            } catch (CompletionException e) { 
+                failed = true; 
+                log.error("Error occured while attempting to scan data", e.getCause()); 
+            } 
+        } 
+        return failed ? -1 : rows; 
+    } 
+
+    /** 
+     * 读库连接池当前还能借出的连接数，留出1个给其他请求；不是Druid连接池时不限制 
+     */ 
+    private int readHeadroom() { 
+        List<DataSource> pools = new ArrayList<DataSource>(); 
+        if (replicaRouter == null) { 
+            pools.add(dataSource); 
+        } else { 
+            for (ReplicaRouter.Replica replica : replicaRouter.getReplicas()) { 
+                pools.add(replica.getDataSource()); 
+            } 
+        } 
+        int headroom = 0; 
+        for (DataSource pool : pools) { 
+            if (!(pool instanceof DruidDataSource)) { 
+                return Integer.MAX_VALUE; 
+            } 
+            DruidDataSource druid = (DruidDataSource) pool; 
+            headroom += Math.max(0, druid.getMaxActive() - druid.getActiveCount()); 
+        } 
+        return Math.max(1, headroom - 1); 
+    } 
+
+    /** 
+     * 在sql的WHERE中追加一个AND条件，没有WHERE时加上 
+     * 条件追加在语句末尾，调用方须先用 checkConditionable 排除 GROUP BY 等WHERE之后的子句 
+     */ 
+    private static String withCondition(String sql, String condition) { 
+        StringBuilder sb = new StringBuilder(sql.length() + condition.length() + 16); 
+        int where = SqlUtil.indexOfTopLevelKeyword(sql, "WHERE", 0); 
+        if (where < 0) { 
+            sb.append(sql).append(" WHERE "); 
+        } else { 
+            sb.append(sql, 0, where + 5).append(" (").append(sql, where + 5, sql.length()).append(") AND "); 
+        } 
+        return sb.append(condition).toString(); 
+    } 
+
+    /** 
+     * @throws IllegalArgumentException sql带有 GROUP BY、HAVING、ORDER BY、LIMIT、UNION，无法用 withCondition 追加条件 
+     */ 
+    private static void checkConditionable(String sql) { 
+        for (String keyword : TRAILING_CLAUSES) { 
+            if (SqlUtil.indexOfTopLevelKeyword(sql, keyword, 0) >= 0) { 
+                throw new IllegalArgumentException("Cannot add a key condition to sql with " + keyword + ": " + sql); 
+            } 
+        } 
+    } 
+
+    private static Object[] appendParams(Object[] params, Object... more) { 
+        if (params == null || params.length == 0) { 
+            return more; 
+        } 
+        Object[] all = Arrays.copyOf(params, params.length + more.length); 
+        System.arraycopy(more, 0, all, params.length, more.length); 
+        return all; 
+    } 
+
+    /** 
+     * 异步执行查询，见 {@link #find(String, Object[])} 
+     * @param sql sql语句 
+     * @param params 参数数组 
+     * @return 查询结果 
+     */ 
+    public CompletableFuture<List<Map<String, Object>>> findAsync(final String sql, final Object[] params) { 
+        return CompletableFuture.supplyAsync(() -> find(sql, params), getAsyncExecutor()); 
+    } 
+
+    /** 
+     * 异步执行查询，见 {@link #find(Class, String, Object[])} 
+     * @param entityClass 类名 
+     * @param sql sql语句 
+     * @param params 参数数组 
+     * @return 查询结果 
+     */ 
+    public <T> CompletableFuture<List<T>> findAsync(final Class<T> entityClass, final String sql, final Object[] params) { 
+        return CompletableFuture.supplyAsync(() -> find(entityClass, sql, params), getAsyncExecutor()); 
+    } 
+
+    /** 
+     * 异步查询第一条记录，见 {@link #findFirst(Class, String, Object[])} 
+     * @param entityClass 类名 
+     * @param sql sql语句 
+     * @param params 参数数组 
+     * @return 对象 
+     */ 
+    public <T> CompletableFuture<T> findFirstAsync(final Class<T> entityClass, final String sql, final Object[] params) { 
+        return CompletableFuture.supplyAsync(() -> findFirst(entityClass, sql, params), getAsyncExecutor()); 
+    } 
+
+    /** 
+     * 异步执行sql语句，见 {@link #update(String, Object[])} 
+     * @param sql sql语句 
+     * @param params 参数数组 
+     * @return 受影响的行数 
+     */ 
+    public CompletableFuture<Integer> updateAsync(final String sql, final Object[] params) { 
+        return CompletableFuture.supplyAsync(() -> update(sql, params), getAsyncExecutor()); 
+    } 
+
+    /** 
+     * 异步执行批量sql语句，见 {@link #batchUpdate(String, Object[][])} 
+     * @param sql sql语句 
+     * @param params 二维参数数组 
+     * @return 受影响的行数的数组 
+     */ 
+    public CompletableFuture<int[]> batchUpdateAsync(final String sql, final Object[][] params) { 
+        return CompletableFuture.supplyAsync(() -> batchUpdate(sql, params), getAsyncExecutor()); 
+    } 
+
+    /** 
+     * 创建异步接口使用的有界线程池 
+     * 线程数和等待队列长度都等于连接池大小，队列满时由提交任务的线程自己执行，不会堆积超出连接池处理能力的任务 
+     * @param poolSize 连接池最大连接数 
+     * @return 线程池 
+     */ 
+    public static ExecutorService newAsyncExecutor(int poolSize) { 
+        poolSize = Math.max(1, poolSize); 
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, 
+                new ArrayBlockingQueue<Runnable>(poolSize), new ThreadFactory() { 
+                    private final AtomicInteger count = new AtomicInteger(); 
+
+                    @Override 
+                    public Thread newThread(Runnable r) { 
+                        Thread thread = new Thread(r, "dbutils-async-" + count.incrementAndGet()); 
+                        thread.setDaemon(true); 
+                        return thread; 
+                    } 
+                }, new ThreadPoolExecutor.CallerRunsPolicy()); 
+        executor.allowCoreThreadTimeOut(true); 
+        return executor; 
+    } 
+
+    /** 
+     * 组提交、批量加载等后台批次专用的线程池，满时抛出 RejectedExecutionException 而不是由调用方执行， 
+     * 避免写库或查询跑在提交批次的定时线程上，使其他批次的时间窗口全部延后 
+     * @param name 线程名前缀 
+     * @param poolSize 线程数 
+     * @param queueSize 排队的批次数上限 
+     * @return 线程池 
+     */ 
+    static ExecutorService newWorkerPool(final String name, int poolSize, int queueSize) { 
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, 
+                new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() { 
+                    private final AtomicInteger count = new AtomicInteger(); 
+
+                    @Override 
+                    public Thread newThread(Runnable r) { 
+                        Thread thread = new Thread(r, name + count.incrementAndGet()); 
+                        thread.setDaemon(true); 
+                        return thread; 
+                    } 
+                }, new ThreadPoolExecutor.AbortPolicy()); 
+        executor.allowCoreThreadTimeOut(true); 
+        return executor; 
+    } 
+
+    private ExecutorService getScanExecutor() { 
+        if (scanExecutor == null) { 
+            synchronized (this) { 
+                if (scanExecutor == null) { 
+                    int poolSize = dataSource instanceof DruidDataSource ? ((DruidDataSource) dataSource).getMaxActive() 
+                            : Runtime.getRuntime().availableProcessors(); 
+                    scanExecutor = newWorkerPool("dbutils-scan-", Math.max(1, poolSize), Math.max(1, poolSize)); 
+                } 
+            } 
+        } 
+        return scanExecutor; 
+    } 
+
+    public ExecutorService getAsyncExecutor() { 
+        if (asyncExecutor == null) { 
+            synchronized (this) { 
+                if (asyncExecutor == null) { 
+                    int poolSize = dataSource instanceof DruidDataSource ? ((DruidDataSource) dataSource).getMaxActive() 
+                            : Runtime.getRuntime().availableProcessors(); 
+                    asyncExecutor = newAsyncExecutor(poolSize); 
+                } 
+            } 
+        } 
+        return asyncExecutor; 
+    } 
+
+    public void setAsyncExecutor(ExecutorService asyncExecutor) { 
+        this.asyncExecutor = asyncExecutor; 
+    } 
+
+    public PlatformTransactionManager getTransactionManager() { 
+        if (transactionManager == null) { 
+            transactionManager = new DataSourceTransactionManager(dataSource); 
+        } 
+        return transactionManager; 
+    } 
+
+    /** 
+     * 设置 inTransaction 使用的事务管理器，须管理本类的同一个数据源，否则本类的调用不会加入其事务 
+     * @param transactionManager 事务管理器 
+     */ 
+    public void setTransactionManager(PlatformTransactionManager transactionManager) { 
+        this.transactionManager = transactionManager; 
+        this.transactionTemplate = null; 
+    } 
+
+    public SqlMetrics getSqlMetrics() { 
+        return sqlMetrics; 
+    } 
+
+    public void setSqlMetrics(SqlMetrics sqlMetrics) { 
+        this.sqlMetrics = sqlMetrics; 
+    } 
+
+    public SingleFlight getSingleFlight() { 
+        return singleFlight; 
+    } 
+
+    public boolean isCoalesceReads() { 
+        return singleFlight != null; 
+    } 
+
+    /** 
+     * 开启后 find*、findRowSet、findFirst、findBy 的并发相同查询合并为一次数据库访问， 
+     * 合并的调用共享同一个结果对象，调用方不应修改返回的List、Map和Bean 
+     * @param coalesceReads 是否合并 
+     */ 
+    public void setCoalesceReads(boolean coalesceReads) { 
+        if (coalesceReads != isCoalesceReads()) { 
+            this.singleFlight = coalesceReads ? new SingleFlight() : null; 
+        } 
+    } 
+
+    public QueryCache getQueryCache() { 
+        return queryCache; 
+    } 
+
+    /** 
+     * 设置查询结果缓存，find*、findRowSet、findFirst、findBy 的结果按 sql+参数 缓存， 
+     * 通过本类执行的 update、batchUpdate 会使所涉及表的缓存失效；绕过本类修改数据库时需自行调用 invalidate 
+     * 缓存的结果对象由所有命中的调用方共享，调用方不应修改 
+     * @param queryCache 查询缓存，为null时不缓存 
+     */ 
+    public void setQueryCache(QueryCache queryCache) { 
+        this.queryCache = queryCache; 
+    } 
+
+    public ReplicaRouter getReplicaRouter() { 
+        return replicaRouter; 
+    } 
+
+    /** 
+     * 设置只读从库路由，find*、findRowSet、stream 走从库，update、batchUpdate 始终走主库 
+     * @param replicaRouter 从库路由，为null或没有从库时全部走主库 
+     */ 
+    public void setReplicaRouter(ReplicaRouter replicaRouter) { 
+        this.replicaRouter = replicaRouter == null || replicaRouter.isEmpty() ? null : replicaRouter; 
+    } 
+
+    public long getReplicaLagMillis() { 
+        return replicaLagMillis; 
+    } 
+
+    /** 
+     * @param replicaLagMillis 从库复制延迟的估计（毫秒），表在这段时间内被写过时从库读到的结果不缓存；0表示不考虑延迟 
+     */ 
+    public void setReplicaLagMillis(long replicaLagMillis) { 
+        this.replicaLagMillis = replicaLagMillis; 
+    } 
+
+    public long getCountCacheMillis() { 
+        return countCacheMillis; 
+    } 
+
+    public void setCountCacheMillis(long countCacheMillis) { 
+        this.countCacheMillis = countCacheMillis; 
+    } 
+
+    public int getBatchChunkSize() { 
+        return batchChunkSize; 
+    } 
+
+    public void setBatchChunkSize(int batchChunkSize) { 
+        this.batchChunkSize = batchChunkSize; 
+    } 
+
+    public StatementCacheTuner getStatementCacheTuner() { 
+        return statementCacheTuner; 
+    } 
+
+    public void setStatementCacheTuner(StatementCacheTuner statementCacheTuner) { 
+        this.statementCacheTuner = statementCacheTuner; 
+    } 
+
+    public long getBatchTargetMillis() { 
+        return batchTargetMillis; 
+    } 
+
+    public void setBatchTargetMillis(long batchTargetMillis) { 
+        this.batchTargetMillis = batchTargetMillis; 
+    } 
+
+    /** 
+     * @return 各语句（指纹）最近一次批量写入任务的自适应块大小和吞吐量 
+     */ 
+    public Map<String, Map<String, Object>> getBatchSizerStats() { 
+        Map<String, Map<String, Object>> stats = new TreeMap<String, Map<String, Object>>(); 
+        for (Map.Entry<String, AdaptiveBatchSizer> entry : batchSizers.entrySet()) { 
+            stats.put(entry.getKey(), entry.getValue().stats()); 
+        } 
+        return stats; 
+    } 
+
+    public int getStreamFetchSize() { 
+        return streamFetchSize; 
+    } 
+
+    public void setStreamFetchSize(int streamFetchSize) { 
+        this.streamFetchSize = streamFetchSize; 
+    } 
 }
\ No newline at end of file
@@ -0,0 +1,227 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.hbcloudwide.didaoa.utils.SqlUtil;
+
+/**
+ * 组提交写入器：并发调用方各自提交一行参数，写入器在一个短时间窗口内收集，
+ * 窗口到期或攒满 maxBatchSize 行后在一个事务中批量执行并只提交一次，再把各行的结果分发给各个调用方
+ * 单行的普通 INSERT ... VALUES (...) 改写成一条多行INSERT，其余语句走JDBC batch
+ * 用吞吐量换取最多一个时间窗口的额外延迟；写入不参与调用方的事务，事务中的写入应直接调用 update
+ * 模板销毁（Spring容器关闭）时已收集的行照常写入，之后的写入以 RejectedExecutionException 异常完成，见 {@link DbUtilsTemplate#destroy()}
+ * <code>
+ * GroupCommitWriter writer = dbUtilsTemplate.groupCommitWriter("INSERT INTO user (user_name, pass_word) VALUES (?, ?)");
+ * CompletableFuture&lt;Integer&gt; rows = writer.write("tom", "123");
+ * </code>
+ */
+public class GroupCommitWriter {
+
+    /** 默认的批次时间窗口（毫秒） */
+    public static final long DEFAULT_WINDOW_MILLIS = 2;
+
+    /** 默认每批最多的行数 */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+    /** 执行批次写入的线程数，即同时进行中的组提交数 */
+    private static final int WORKER_THREADS = 4;
+
+    /** 排队等待写入的批次数上限，超出时该批次的写入异常完成 */
+    private static final int WORKER_QUEUE_SIZE = 1024;
+
+    private final DbUtilsTemplate template;
+    /** 定时线程和工作线程池由模板持有，同一模板的所有组提交写入器共用，模板销毁时关闭 */
+    private final ScheduledExecutorService timer;
+    private final ExecutorService workers;
+    private final String sql;
+    private final int width;
+    /** 是否为可改写成多行INSERT的普通INSERT（不含IGNORE、ON DUPLICATE KEY UPDATE），此时每行的受影响行数都是1 */
+    private final boolean multiRow;
+    private final long windowMillis;
+    private final int maxBatchSize;
+
+    private List<Pending> pending = new ArrayList<Pending>();
+    private long batchId;
+
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    /**
+     * @param template 执行写入的模板
+     * @param sql 单行的写入语句
+     * @param windowMillis 收集的时间窗口（毫秒）
+     * @param maxBatchSize 每批最多的行数，攒满立即写入
+     */
+    public GroupCommitWriter(DbUtilsTemplate template, String sql, long windowMillis, int maxBatchSize) {
+        if (windowMillis < 0 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch window " + windowMillis + "ms or size " + maxBatchSize);
+        }
+        String[] insert = SqlUtil.splitInsertValues(sql);
+        this.template = template;
+        this.timer = template.batchTimer("dbutils-group-commit");
+        this.workers = template.batchWorkers("dbutils-group-commit-worker-", WORKER_THREADS, WORKER_QUEUE_SIZE);
+        this.sql = sql;
+        this.width = SqlUtil.countPlaceholders(sql);
+        this.multiRow = insert != null && sql.trim().regionMatches(true, 0, "INSERT", 0, 6)
+                && SqlUtil.indexOfKeyword(insert[0], "IGNORE", 0) < 0 && insert[2].trim().isEmpty();
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * 提交一行参数，在所在批次提交后完成
+     * @param params 参数，个数与语句中的占位符一致
+     * @return 该行的受影响行数；批次出错时该行会单独重试一次，仍出错则异常完成；积压的批次超出上限时以 RejectedExecutionException 异常完成
+     */
+    public CompletableFuture<Integer> write(Object... params) {
+        if (params.length != width) {
+            throw new IllegalArgumentException("Expected " + width + " parameters but got " + params.length);
+        }
+        CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+        List<Pending> full = null;
+        synchronized (this) {
+            pending.add(new Pending(params, future));
+            if (pending.size() >= maxBatchSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                final long id = batchId;
+                try {
+                    timer.schedule(() -> dispatchPending(id), windowMillis, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // 模板已销毁，立即发出，由工作线程池拒绝
+                    full = takePending();
+                }
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return future;
+    }
+
+    /**
+     * 立即写入当前已收集的行，不等时间窗口
+     */
+    public void flush() {
+        List<Pending> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    /**
+     * @return 已写入的行数
+     */
+    public long getRowCount() {
+        return rows.sum();
+    }
+
+    /**
+     * @return 已执行的批次数，行数与批次数之比即平均每次提交合并的行数
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * @return 批次出错后逐行重试的次数
+     */
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    private void dispatchPending(long id) {
+        List<Pending> batch;
+        synchronized (this) {
+            // 该批次已因攒满或flush提前发出
+            if (id != batchId || pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    private List<Pending> takePending() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<Pending>();
+        batchId++;
+        return batch;
+    }
+
+    private void dispatch(final List<Pending> batch) {
+        try {
+            workers.execute(() -> run(batch));
+        } catch (RejectedExecutionException e) {
+            // 不在调用方（可能是定时线程）上写库，写入积压时直接失败
+            for (Pending row : batch) {
+                row.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void run(List<Pending> batch) {
+        final Object[][] params = new Object[batch.size()][];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = batch.get(i).params;
+        }
+        int[] counts;
+        try {
+            // 在事务中出错时抛出 DataAccessException 而不是返回默认值，整批回滚
+            counts = template.inTransaction(status -> {
+                if (!multiRow) {
+                    return template.batchUpdate(sql, params);
+                }
+                template.batchUpdate(sql, Arrays.asList(params).iterator(), params.length, false);
+                int[] ones = new int[params.length];
+                Arrays.fill(ones, 1);
+                return ones;
+            });
+        } catch (RuntimeException | Error e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            // 整批已回滚，逐行重试，只让出错的行失败
+            for (Pending row : batch) {
+                retries.increment();
+                try {
+                    row.future.complete(template.inTransaction(status -> template.update(sql, row.params)));
+                    rows.increment();
+                } catch (RuntimeException | Error ex) {
+                    row.future.completeExceptionally(ex);
+                }
+            }
+            return;
+        }
+        batches.increment();
+        rows.add(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future.complete(i < counts.length ? counts[i] : 0);
+        }
+    }
+
+    private static final class Pending {
+
+        final Object[] params;
+        final CompletableFuture<Integer> future;
+
+        Pending(Object[] params, CompletableFuture<Integer> future) {
+            this.params = params;
+            this.future = future;
+        }
+    }
+}
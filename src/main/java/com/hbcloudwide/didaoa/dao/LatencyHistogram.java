@@ -0,0 +1,112 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的对数-线性直方图（HDR风格），记录微秒级耗时
+ * 每个2的幂区间再等分为16个子桶，相对误差约6%，固定占用约5KB，记录一次只是一次原子加
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** 可记录的最大值约 2^40 微秒（约12天），更大的值计入最后一个桶 */
+    private static final int MAX_SHIFT = 40 - SUB_BUCKET_BITS;
+    private static final int BUCKETS = (MAX_SHIFT + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private volatile long max;
+
+    /**
+     * 记录一个值
+     * @param micros 耗时（微秒），负数按0处理
+     */
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        counts.incrementAndGet(bucketOf(micros));
+        total.increment();
+        sum.add(micros);
+        if (micros > max) {
+            synchronized (this) {
+                if (micros > max) {
+                    max = micros;
+                }
+            }
+        }
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        long count = total.sum();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * 百分位值，返回所在桶的上界（不超过最大值，落在最后一个桶时为最大值）
+     * @param percentile 百分位，如 99.9
+     * @return 耗时（微秒），没有记录时返回0
+     */
+    public long getPercentile(double percentile) {
+        long count = total.sum();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * Math.min(100d, Math.max(0d, percentile)) / 100d);
+        rank = Math.max(1, rank);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                // 最后一个桶没有上界，超出范围的值只能以最大值为准
+                return i == BUCKETS - 1 ? max : Math.min(upperBoundOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        sum.reset();
+        max = 0;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        if (shift > MAX_SHIFT) {
+            return BUCKETS - 1;
+        }
+        // value >> shift 落在 [16, 32)
+        return (shift + 1) * SUB_BUCKETS + (int) (value >> shift) - SUB_BUCKETS;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,124 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Iterator;
+
+/**
+ * 把参数行按 LOAD DATA 的默认格式（字段以制表符分隔、行以换行结束、反斜杠转义、NULL写作 \N）编码成UTF-8字节流
+ * 驱动读取时才从迭代器取下一行，内存中只保留一行的编码结果，不生成临时文件
+ */
+class LoadDataInputStream extends InputStream {
+
+    /** LOAD DATA 语句中与本格式对应的子句 */
+    static final String FORMAT = "CHARACTER SET utf8 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n'";
+
+    private static final byte[] NULL = { '\\', 'N' };
+
+    private final Iterator<Object[]> rows;
+    private byte[] buf = new byte[8192];
+    private int pos;
+    private int limit;
+    private long rowCount;
+
+    LoadDataInputStream(Iterator<Object[]> rows) {
+        this.rows = rows;
+    }
+
+    @Override
+    public int read() {
+        if (!fill()) {
+            return -1;
+        }
+        return buf[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    /**
+     * @return 已编码的行数
+     */
+    long getRowCount() {
+        return rowCount;
+    }
+
+    private boolean fill() {
+        while (pos == limit) {
+            if (!rows.hasNext()) {
+                return false;
+            }
+            pos = 0;
+            limit = 0;
+            encode(rows.next());
+            rowCount++;
+        }
+        return true;
+    }
+
+    private void encode(Object[] row) {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                append((byte) '\t');
+            }
+            Object value = row[i];
+            if (value == null) {
+                append(NULL, 0, NULL.length);
+            } else if (value instanceof byte[]) {
+                escape((byte[]) value);
+            } else if (value instanceof Boolean) {
+                append(((Boolean) value) ? (byte) '1' : (byte) '0');
+            } else if (value instanceof java.util.Date && !(value instanceof java.sql.Date || value instanceof java.sql.Time
+                    || value instanceof Timestamp)) {
+                escape(new Timestamp(((java.util.Date) value).getTime()).toString().getBytes(StandardCharsets.UTF_8));
+            } else {
+                escape(value.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        append((byte) '\n');
+    }
+
+    private void escape(byte[] bytes) {
+        for (byte b : bytes) {
+            switch (b) {
+            case '\\':
+            case '\t':
+            case '\n':
+            case '\r':
+            case 0:
+                append((byte) '\\');
+                append(b == '\t' ? (byte) 't' : b == '\n' ? (byte) 'n' : b == '\r' ? (byte) 'r' : b == 0 ? (byte) '0' : b);
+                break;
+            default:
+                append(b);
+            }
+        }
+    }
+
+    private void append(byte[] b, int off, int len) {
+        for (int i = 0; i < len; i++) {
+            append(b[off + i]);
+        }
+    }
+
+    private void append(byte b) {
+        if (limit == buf.length) {
+            byte[] grown = new byte[buf.length * 2];
+            System.arraycopy(buf, 0, grown, 0, limit);
+            buf = grown;
+        }
+        buf[limit++] = b;
+    }
+}
@@ -0,0 +1,276 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 进程内的查询结果缓存，按最近最少使用（LRU）淘汰，同时限制条目数和估算的内存占用
+ * 内存占用按结果中前若干行的大小外推估算，只用于控制总量，不是精确值
+ */
+public class LocalQueryCache implements QueryCache {
+
+    /** 估算大小时每个集合最多采样的元素数 */
+    private static final int SAMPLE_SIZE = 32;
+
+    /** 单个结果超过总容量的这个比例时不缓存，避免一个大结果挤掉所有条目 */
+    private static final int MAX_ENTRY_FRACTION = 4;
+
+    private final int maxEntries;
+    private final long maxBytes;
+
+    private final LinkedHashMap<QueryKey, Entry> entries = new LinkedHashMap<QueryKey, Entry>(256, 0.75f, true);
+    /** 表名 -> 读取该表的缓存条目 */
+    private final Map<String, Set<QueryKey>> byTable = new HashMap<String, Set<QueryKey>>();
+    private final Map<String, Long> tableVersions = new HashMap<String, Long>();
+    /** 清空全部时递增，使所有表的版本号都变化 */
+    private long epoch;
+    private long bytes;
+
+    private long hits;
+    private long misses;
+    private long puts;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * @param maxEntries 最多缓存的结果数
+     * @param maxBytes 估算的最大内存占用（字节）
+     */
+    public LocalQueryCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("Invalid cache size " + maxEntries + " entries / " + maxBytes + " bytes");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized Object get(QueryKey key, Set<String> tables) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    @Override
+    public synchronized long version(Set<String> tables) {
+        long version = epoch;
+        for (String table : tables) {
+            Long v = tableVersions.get(table);
+            if (v != null) {
+                version += v;
+            }
+        }
+        return version;
+    }
+
+    @Override
+    public void put(QueryKey key, Set<String> tables, Object value, long version) {
+        long size = estimate(value) + estimate(key.getSql()) + 128;
+        if (size > maxBytes / MAX_ENTRY_FRACTION) {
+            return;
+        }
+        synchronized (this) {
+            if (version(tables) != version) {
+                return;
+            }
+            remove(key);
+            entries.put(key, new Entry(value, tables, size));
+            for (String table : tables) {
+                Set<QueryKey> keys = byTable.get(table);
+                if (keys == null) {
+                    keys = new HashSet<QueryKey>();
+                    byTable.put(table, keys);
+                }
+                keys.add(key);
+            }
+            bytes += size;
+            puts++;
+            Iterator<Map.Entry<QueryKey, Entry>> it = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+                Map.Entry<QueryKey, Entry> eldest = it.next();
+                it.remove();
+                unlink(eldest.getKey(), eldest.getValue());
+                evictions++;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void invalidate(Set<String> tables) {
+        if (tables.isEmpty()) {
+            clear();
+            return;
+        }
+        for (String table : tables) {
+            Long v = tableVersions.get(table);
+            tableVersions.put(table, v == null ? 1 : v + 1);
+            Set<QueryKey> keys = byTable.remove(table);
+            if (keys != null) {
+                for (QueryKey key : keys) {
+                    if (remove(key)) {
+                        invalidations++;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        epoch++;
+        invalidations += entries.size();
+        entries.clear();
+        byTable.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        long requests = hits + misses;
+        map.put("hits", hits);
+        map.put("misses", misses);
+        map.put("hitRate", requests == 0 ? 0d : (double) hits / requests);
+        map.put("puts", puts);
+        map.put("evictions", evictions);
+        map.put("invalidations", invalidations);
+        map.put("entries", entries.size());
+        map.put("maxEntries", maxEntries);
+        map.put("bytes", bytes);
+        map.put("maxBytes", maxBytes);
+        return map;
+    }
+
+    private boolean remove(QueryKey key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        unlink(key, entry);
+        return true;
+    }
+
+    private void unlink(QueryKey key, Entry entry) {
+        bytes -= entry.size;
+        for (String table : entry.tables) {
+            Set<QueryKey> keys = byTable.get(table);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    byTable.remove(table);
+                }
+            }
+        }
+    }
+
+    /**
+     * 估算对象占用的字节数，集合只采样前 SAMPLE_SIZE 个元素再按总数外推
+     */
+    static long estimate(Object value) {
+        return estimate(value, 2);
+    }
+
+    private static long estimate(Object value, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character
+                || value instanceof java.util.Date || value instanceof Enum) {
+            return 24;
+        }
+        if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        }
+        if (value instanceof char[]) {
+            return 16 + 2L * ((char[]) value).length;
+        }
+        if (depth < 0) {
+            return 64;
+        }
+        if (value instanceof CompactRowSet) {
+            CompactRowSet rowSet = (CompactRowSet) value;
+            int n = Math.min(rowSet.size(), SAMPLE_SIZE);
+            long sampled = 0;
+            for (int i = 0; i < n; i++) {
+                sampled += estimate(rowSet.getRow(i), depth);
+            }
+            return 64 + 40L * rowSet.getColumnCount() + extrapolate(sampled, n, rowSet.size());
+        }
+        if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            int n = Math.min(array.length, SAMPLE_SIZE);
+            long sampled = 0;
+            for (int i = 0; i < n; i++) {
+                sampled += 8 + estimate(array[i], depth - 1);
+            }
+            return 16 + extrapolate(sampled, n, array.length);
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            int n = 0;
+            long sampled = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (n++ == SAMPLE_SIZE) {
+                    break;
+                }
+                sampled += 32 + estimate(entry.getKey(), depth - 1) + estimate(entry.getValue(), depth - 1);
+            }
+            return 48 + 4L * map.size() + extrapolate(sampled, Math.min(n, SAMPLE_SIZE), map.size());
+        }
+        if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            int n = 0;
+            long sampled = 0;
+            for (Object element : collection) {
+                if (n++ == SAMPLE_SIZE) {
+                    break;
+                }
+                sampled += 8 + estimate(element, depth);
+            }
+            return 24 + extrapolate(sampled, Math.min(n, SAMPLE_SIZE), collection.size());
+        }
+        // Bean：对象头加各字段
+        long size = 16;
+        for (Field field : QueryResultCodec.fields(value.getClass())) {
+            size += 8;
+            if (!field.getType().isPrimitive()) {
+                try {
+                    size += estimate(field.get(value), depth - 1);
+                } catch (IllegalAccessException e) {
+                    size += 16;
+                }
+            }
+        }
+        return size;
+    }
+
+    private static long extrapolate(long sampled, int sampledCount, int total) {
+        return sampledCount == 0 ? 0 : sampled * total / sampledCount;
+    }
+
+    private static final class Entry {
+
+        final Object value;
+        final Set<String> tables;
+        final long size;
+
+        Entry(Object value, Set<String> tables, long size) {
+            this.value = value;
+            this.tables = tables;
+            this.size = size;
+        }
+    }
+}
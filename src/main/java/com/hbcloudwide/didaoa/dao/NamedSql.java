@@ -0,0 +1,138 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.hbcloudwide.didaoa.utils.SqlUtil;
+
+/**
+ * 解析后的命名参数sql：:name 已替换为 ?，并记下每个 ? 对应的参数名
+ * 同一语句只解析一次（由 {@link DbUtilsTemplate} 缓存），之后每次调用只按参数名取值
+ * 参数可以来自 Map（按键）或 Bean（按属性名，忽略大小写）；值为 Collection 时按 IN 列表展开
+ * <code>
+ * dbUtilsTemplate.findNamed(User.class, "SELECT * FROM user WHERE id IN (:ids) AND user_name = :name", params);
+ * </code>
+ */
+public final class NamedSql {
+
+    private final String sql;
+    private final String[] names;
+
+    /** 最近一次绑定的Bean类型及其属性读方法，同一语句通常总是用同一种Bean */
+    private volatile BeanReaders beanReaders;
+
+    private NamedSql(String sql, String[] names) {
+        this.sql = sql;
+        this.names = names;
+    }
+
+    /**
+     * @param sql 带命名参数的sql语句
+     * @return 解析结果
+     */
+    public static NamedSql parse(String sql) {
+        List<String> names = new ArrayList<String>();
+        String positional = SqlUtil.parseNamedParameters(sql, names);
+        return new NamedSql(positional, names.toArray(new String[names.size()]));
+    }
+
+    /**
+     * @return 使用 ? 占位符的sql
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return 按 ? 顺序的参数名
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * 按参数名取值，生成位置参数
+     * @param source Map（按键取值）或Bean（按属性取值），没有命名参数时可以为null
+     * @return 参数数组
+     * @throws IllegalArgumentException 缺少参数
+     */
+    public Object[] bind(Object source) {
+        if (names.length == 0) {
+            return null;
+        }
+        if (source == null) {
+            throw new IllegalArgumentException("Missing parameter source for " + sql);
+        }
+        Object[] params = new Object[names.length];
+        if (source instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) source;
+            for (int i = 0; i < names.length; i++) {
+                Object value = map.get(names[i]);
+                if (value == null && !map.containsKey(names[i])) {
+                    throw new IllegalArgumentException("Missing parameter :" + names[i] + " for " + sql);
+                }
+                params[i] = value;
+            }
+            return params;
+        }
+        Method[] readers = readers(source.getClass());
+        try {
+            for (int i = 0; i < names.length; i++) {
+                params[i] = readers[i].invoke(source);
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot access properties of " + source.getClass().getName(), e);
+        }
+        return params;
+    }
+
+    private Method[] readers(Class<?> type) {
+        BeanReaders cached = beanReaders;
+        if (cached != null && cached.type == type) {
+            return cached.readers;
+        }
+        PropertyDescriptor[] props;
+        try {
+            props = Introspector.getBeanInfo(type).getPropertyDescriptors();
+        } catch (IntrospectionException e) {
+            throw new IllegalArgumentException("Cannot introspect " + type.getName(), e);
+        }
+        Method[] readers = new Method[names.length];
+        for (int i = 0; i < names.length; i++) {
+            for (PropertyDescriptor prop : props) {
+                if (prop.getReadMethod() != null && prop.getName().equalsIgnoreCase(names[i])) {
+                    readers[i] = prop.getReadMethod();
+                    break;
+                }
+            }
+            if (readers[i] == null) {
+                throw new IllegalArgumentException(type.getName() + " has no readable property " + names[i] + " for " + sql);
+            }
+        }
+        beanReaders = new BeanReaders(type, readers);
+        return readers;
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+
+    private static final class BeanReaders {
+
+        final Class<?> type;
+        final Method[] readers;
+
+        BeanReaders(Class<?> type, Method[] readers) {
+            this.type = type;
+            this.readers = readers;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.util.List;
+
+/**
+ * 键集（seek）分页的一页结果
+ * 下一页以 nextKey 作为 afterKey 查询，nextKey 为null表示已经是最后一页
+ */
+public class Page<T> {
+
+    private final List<T> items;
+    private final Object nextKey;
+    private final long total;
+
+    public Page(List<T> items, Object nextKey, long total) {
+        this.items = items;
+        this.nextKey = nextKey;
+        this.total = total;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return 本页最后一行的键值，没有下一页时为null
+     */
+    public Object getNextKey() {
+        return nextKey;
+    }
+
+    public boolean isHasNext() {
+        return nextKey != null;
+    }
+
+    /**
+     * @return 总行数（可能来自缓存），未要求统计时为-1
+     */
+    public long getTotal() {
+        return total;
+    }
+}
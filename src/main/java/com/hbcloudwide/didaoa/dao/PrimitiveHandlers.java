@@ -0,0 +1,120 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.apache.commons.dbutils.ResultSetHandler;
+
+/**
+ * 直接用 getLong/getInt/getDouble 读取第一列到基本类型数组的结果集处理器，不装箱，不经过 getObject
+ * 单值处理器返回长度为0（没有记录或值为NULL）或1的数组；整列处理器中NULL读为0
+ * 也可以用于 {@link QueryBatch#add}
+ */
+public final class PrimitiveHandlers {
+
+    private static final long[] NO_LONG = new long[0];
+    private static final int[] NO_INT = new int[0];
+    private static final double[] NO_DOUBLE = new double[0];
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private PrimitiveHandlers() {
+    }
+
+    /**
+     * 第一行第一列
+     */
+    public static final ResultSetHandler<long[]> LONG = new ResultSetHandler<long[]>() {
+        @Override
+        public long[] handle(ResultSet rs) throws SQLException {
+            if (!rs.next()) {
+                return NO_LONG;
+            }
+            long value = rs.getLong(1);
+            return rs.wasNull() ? NO_LONG : new long[] { value };
+        }
+    };
+
+    /**
+     * 第一行第一列
+     */
+    public static final ResultSetHandler<int[]> INT = new ResultSetHandler<int[]>() {
+        @Override
+        public int[] handle(ResultSet rs) throws SQLException {
+            if (!rs.next()) {
+                return NO_INT;
+            }
+            int value = rs.getInt(1);
+            return rs.wasNull() ? NO_INT : new int[] { value };
+        }
+    };
+
+    /**
+     * 第一行第一列
+     */
+    public static final ResultSetHandler<double[]> DOUBLE = new ResultSetHandler<double[]>() {
+        @Override
+        public double[] handle(ResultSet rs) throws SQLException {
+            if (!rs.next()) {
+                return NO_DOUBLE;
+            }
+            double value = rs.getDouble(1);
+            return rs.wasNull() ? NO_DOUBLE : new double[] { value };
+        }
+    };
+
+    /**
+     * 所有行的第一列
+     */
+    public static final ResultSetHandler<long[]> LONG_COLUMN = new ResultSetHandler<long[]>() {
+        @Override
+        public long[] handle(ResultSet rs) throws SQLException {
+            long[] values = NO_LONG;
+            int size = 0;
+            while (rs.next()) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, size * 2));
+                }
+                values[size++] = rs.getLong(1);
+            }
+            return size == values.length ? values : Arrays.copyOf(values, size);
+        }
+    };
+
+    /**
+     * 所有行的第一列
+     */
+    public static final ResultSetHandler<int[]> INT_COLUMN = new ResultSetHandler<int[]>() {
+        @Override
+        public int[] handle(ResultSet rs) throws SQLException {
+            int[] values = NO_INT;
+            int size = 0;
+            while (rs.next()) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, size * 2));
+                }
+                values[size++] = rs.getInt(1);
+            }
+            return size == values.length ? values : Arrays.copyOf(values, size);
+        }
+    };
+
+    /**
+     * 所有行的第一列
+     */
+    public static final ResultSetHandler<double[]> DOUBLE_COLUMN = new ResultSetHandler<double[]>() {
+        @Override
+        public double[] handle(ResultSet rs) throws SQLException {
+            double[] values = NO_DOUBLE;
+            int size = 0;
+            while (rs.next()) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, size * 2));
+                }
+                values[size++] = rs.getDouble(1);
+            }
+            return size == values.length ? values : Arrays.copyOf(values, size);
+        }
+    };
+}
@@ -0,0 +1,164 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.dbutils.handlers.MapHandler;
+import org.apache.commons.dbutils.handlers.MapListHandler;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+
+/**
+ * 一次往返执行的多条查询
+ * 先登记查询，再交给 {@link DbUtilsTemplate#executeBatch(QueryBatch)} 拼成一条多语句SQL发送（需要连接串带 allowMultiQueries=true 并开启 spring.datasource.multiStatementAllow），
+ * 每个结果集用各自的处理器处理，执行后通过登记时返回的 {@link Result} 取结果
+ * <code>
+ * QueryBatch batch = new QueryBatch();
+ * QueryBatch.Result&lt;List&lt;User&gt;&gt; users = batch.find(User.class, "SELECT * FROM user WHERE id &gt; ?", new Object[] { 10 });
+ * QueryBatch.Result&lt;Object&gt; count = batch.findBy("SELECT COUNT(*) c FROM user", "c", null);
+ * dbUtilsTemplate.executeBatch(batch);
+ * users.get(); count.get();
+ * </code>
+ */
+public class QueryBatch {
+
+    private final List<Result<?>> results = new ArrayList<Result<?>>();
+
+    /**
+     * 登记查询，每行结果保存到Map中
+     * @param sql 单条sql语句，不带结尾的分号
+     * @param params 参数数组
+     * @return 结果，出错时为空List
+     */
+    public Result<List<Map<String, Object>>> find(String sql, Object[] params) {
+        return add(sql, params, new MapListHandler(), Collections.<Map<String, Object>>emptyList());
+    }
+
+    /**
+     * 登记查询，每行结果保存到Bean中
+     * @param entityClass 类名
+     * @param sql 单条sql语句，不带结尾的分号
+     * @param params 参数数组
+     * @return 结果，出错时为空List
+     */
+    public <T> Result<List<T>> find(Class<T> entityClass, String sql, Object[] params) {
+        return add(sql, params, BeanRowMapper.listHandler(entityClass), Collections.<T>emptyList());
+    }
+
+    /**
+     * 登记查询，取第一条记录封装成Bean
+     * @param entityClass 类名
+     * @param sql 单条sql语句，不带结尾的分号
+     * @param params 参数数组
+     * @return 结果，没有记录或出错时为null
+     */
+    public <T> Result<T> findFirst(Class<T> entityClass, String sql, Object[] params) {
+        return add(sql, params, BeanRowMapper.handler(entityClass), null);
+    }
+
+    /**
+     * 登记查询，取第一条记录封装成Map
+     * @param sql 单条sql语句，不带结尾的分号
+     * @param params 参数数组
+     * @return 结果，没有记录或出错时为null
+     */
+    public Result<Map<String, Object>> findFirst(String sql, Object[] params) {
+        return add(sql, params, new MapHandler(), null);
+    }
+
+    /**
+     * 登记查询，取第一条记录指定列的值
+     * @param sql 单条sql语句，不带结尾的分号
+     * @param columnName 列名
+     * @param params 参数数组
+     * @return 结果，没有记录或出错时为null
+     */
+    public Result<Object> findBy(String sql, String columnName, Object[] params) {
+        return add(sql, params, new ScalarHandler<Object>(columnName), null);
+    }
+
+    /**
+     * 登记查询，使用自定义的结果集处理器
+     * @param sql 单条sql语句，不带结尾的分号
+     * @param params 参数数组
+     * @param rsh 结果集处理器
+     * @return 结果，出错时为null
+     */
+    public <T> Result<T> add(String sql, Object[] params, ResultSetHandler<T> rsh) {
+        return add(sql, params, rsh, null);
+    }
+
+    private <T> Result<T> add(String sql, Object[] params, ResultSetHandler<T> rsh, T defaultValue) {
+        Result<T> result = new Result<T>(sql, params, rsh, defaultValue);
+        results.add(result);
+        return result;
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    List<Result<?>> getResults() {
+        return results;
+    }
+
+    /**
+     * 登记的一条查询及其结果
+     */
+    public static class Result<T> {
+
+        private final String sql;
+        private final Object[] params;
+        private final ResultSetHandler<T> rsh;
+        private final T defaultValue;
+        private T value;
+        private boolean done;
+
+        Result(String sql, Object[] params, ResultSetHandler<T> rsh, T defaultValue) {
+            this.sql = sql;
+            this.params = params;
+            this.rsh = rsh;
+            this.defaultValue = defaultValue;
+            this.value = defaultValue;
+        }
+
+        String getSql() {
+            return sql;
+        }
+
+        Object[] getParams() {
+            return params;
+        }
+
+        void handle(ResultSet rs) throws SQLException {
+            value = rsh.handle(rs);
+            done = true;
+        }
+
+        /**
+         * 批次出错时恢复为默认值
+         */
+        void reset() {
+            value = defaultValue;
+            done = false;
+        }
+
+        /**
+         * @return 是否已成功取得结果
+         */
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * @return 查询结果，批次未执行或出错时为登记时说明的默认值
+         */
+        public T get() {
+            return value;
+        }
+    }
+}
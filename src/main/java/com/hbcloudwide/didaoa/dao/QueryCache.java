@@ -0,0 +1,51 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * DbUtilsTemplate 的查询结果缓存，按查询读取的表失效
+ * 每个表有一个只增不减的版本号，写操作使其所涉及表的版本号递增并删除依赖这些表的结果；
+ * 查询前取得版本号，查询后版本号未变才写入缓存，避免查询期间发生的写操作被旧结果覆盖
+ * 缓存的结果对象由所有命中的调用方共享，调用方不应修改
+ */
+public interface QueryCache {
+
+    /**
+     * @param key 查询标识
+     * @param tables 查询读取的表
+     * @return 缓存的结果，未命中或已失效时为null
+     */
+    Object get(QueryKey key, Set<String> tables);
+
+    /**
+     * @param tables 表名（小写）
+     * @return 这些表当前的版本号，任一表被修改后返回值都会不同
+     */
+    long version(Set<String> tables);
+
+    /**
+     * 写入查询结果，tables 的版本号与 version 不一致时不写入
+     * @param key 查询标识
+     * @param tables 查询读取的表
+     * @param value 查询结果，不为null
+     * @param version 查询前调用 version(tables) 的返回值
+     */
+    void put(QueryKey key, Set<String> tables, Object value, long version);
+
+    /**
+     * 表被修改，删除读取这些表的缓存结果
+     * @param tables 被修改的表，为空集合（识别不出表名）时清空全部
+     */
+    void invalidate(Set<String> tables);
+
+    /**
+     * 清空全部缓存
+     */
+    void clear();
+
+    /**
+     * @return 命中率等统计
+     */
+    Map<String, Object> stats();
+}
@@ -0,0 +1,140 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * 一次查询的标识：sql、参数和结果类型都相同的查询得到相同的结果
+ * 用于合并并发查询（{@link SingleFlight}）和缓存查询结果（{@link QueryCache}）
+ */
+public final class QueryKey {
+
+    private final String kind;
+    private final Object type;
+    private final String sql;
+    private final Object[] params;
+    private final int hash;
+
+    /**
+     * @param kind 结果类型，区分同一条sql的不同处理方式，如 "list"、"first"
+     * @param type 结果的Bean类型或列名等附加区分，可以为null
+     * @param sql sql语句
+     * @param params 参数数组，可以为null
+     */
+    public QueryKey(String kind, Object type, String sql, Object[] params) {
+        this.kind = kind;
+        this.type = type;
+        this.sql = sql;
+        this.params = params;
+        int h = kind.hashCode();
+        h = 31 * h + (type == null ? 0 : type.hashCode());
+        h = 31 * h + sql.hashCode();
+        this.hash = 31 * h + Arrays.deepHashCode(params);
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public Object getType() {
+        return type;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public Object[] getParams() {
+        return params;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof QueryKey)) {
+            return false;
+        }
+        QueryKey other = (QueryKey) obj;
+        return hash == other.hash && kind.equals(other.kind) && sql.equals(other.sql)
+                && (type == null ? other.type == null : type.equals(other.type))
+                && Arrays.deepEquals(params, other.params);
+    }
+
+    /**
+     * 跨进程稳定且无歧义的编码，用作共享缓存的键
+     * 每个值带类型标记，字符串和集合带长度，toString 相同的不同值（null 与 "null"、含逗号的字符串与多个元素、
+     * 只差毫秒的日期）编码不同
+     * @return 编码后的字节
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + sql.length() * 2);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            writeString(out, kind);
+            writeValue(out, type instanceof Class ? ((Class<?>) type).getName() : type);
+            writeString(out, sql);
+            writeValue(out, params);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte('N');
+        } else if (value instanceof Collection) {
+            Collection<?> values = (Collection<?>) value;
+            out.writeByte('C');
+            out.writeInt(values.size());
+            for (Object v : values) {
+                writeValue(out, v);
+            }
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            out.writeByte('A');
+            writeString(out, value.getClass().getComponentType().getName());
+            out.writeInt(length);
+            for (int i = 0; i < length; i++) {
+                writeValue(out, Array.get(value, i));
+            }
+        } else if (value instanceof java.util.Date) {
+            // toString 只精确到秒，按毫秒（Timestamp 另加纳秒）编码
+            out.writeByte('D');
+            writeString(out, value.getClass().getName());
+            out.writeLong(((java.util.Date) value).getTime());
+            out.writeInt(value instanceof java.sql.Timestamp ? ((java.sql.Timestamp) value).getNanos() : 0);
+        } else {
+            out.writeByte('V');
+            writeString(out, value.getClass().getName());
+            writeString(out, value.toString());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 可读且稳定的文本形式，Bean类型取类名；有歧义，不能用作缓存键，见 {@link #encode()}
+     */
+    @Override
+    public String toString() {
+        Object t = type instanceof Class ? ((Class<?>) type).getName() : type;
+        return kind + (t == null ? "" : ":" + t) + "|" + sql + "|" + Arrays.deepToString(params);
+    }
+}
@@ -0,0 +1,440 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 查询结果的紧凑二进制编码，用于把结果放到Redis等进程外缓存
+ * 支持 JDBC 常见的值类型、List、查询得到的 Map 行（同列的多行只写一次列名）、CompactRowSet 和 Bean（按字段名编码）
+ * 其余类型抛出 IllegalArgumentException，调用方应放弃缓存
+ * Bean 只会解码成调用方指定的类型，不会按数据中的类名加载任意类
+ */
+public final class QueryResultCodec {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte SHORT = 6;
+    private static final byte BYTE = 7;
+    private static final byte TRUE = 8;
+    private static final byte FALSE = 9;
+    private static final byte BIG_DECIMAL = 10;
+    private static final byte BIG_INTEGER = 11;
+    private static final byte SQL_DATE = 12;
+    private static final byte SQL_TIME = 13;
+    private static final byte TIMESTAMP = 14;
+    private static final byte DATE = 15;
+    private static final byte BYTES = 16;
+    private static final byte LIST = 17;
+    private static final byte ROW_SET = 18;
+    private static final byte MAP_LIST = 19;
+    private static final byte MAP = 20;
+    private static final byte BEAN = 21;
+    private static final byte BEAN_LIST = 22;
+
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<Field>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())) {
+                        try {
+                            field.setAccessible(true);
+                            fields.add(field);
+                        } catch (RuntimeException e) {
+                            // 无法访问的字段（如JDK内部类的）跳过
+                        }
+                    }
+                }
+            }
+            return fields.toArray(new Field[fields.size()]);
+        }
+    };
+
+    private QueryResultCodec() {
+    }
+
+    /**
+     * Bean的实例字段（不含static和transient），已设为可访问
+     */
+    static Field[] fields(Class<?> type) {
+        return FIELDS.get(type);
+    }
+
+    /**
+     * @param value 查询结果
+     * @return 编码后的字节
+     * @throws IllegalArgumentException 含有不支持的类型
+     */
+    public static byte[] encode(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try {
+            write(new DataOutputStream(bytes), value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param data 编码后的字节
+     * @param offset 起始位置
+     * @param beanType 结果中Bean的类型，没有Bean时可以为null
+     * @return 查询结果，Map行为忽略大小写的只读Map
+     * @throws IllegalArgumentException 数据损坏或Bean类型不符
+     */
+    public static Object decode(byte[] data, int offset, Class<?> beanType) {
+        try {
+            return read(new DataInputStream(new ByteArrayInputStream(data, offset, data.length - offset)), beanType);
+        } catch (IOException | ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot decode cached result: " + e.getMessage(), e);
+        }
+    }
+
+    private static void write(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            writeVarLong(out, (Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(out, (Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            writeString(out, value.toString());
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            writeBytes(out, ((BigInteger) value).toByteArray());
+        } else if (value instanceof java.sql.Timestamp) {
+            out.writeByte(TIMESTAMP);
+            writeVarLong(out, ((java.sql.Timestamp) value).getTime());
+            writeVarLong(out, ((java.sql.Timestamp) value).getNanos());
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(SQL_DATE);
+            writeVarLong(out, ((java.util.Date) value).getTime());
+        } else if (value instanceof java.sql.Time) {
+            out.writeByte(SQL_TIME);
+            writeVarLong(out, ((java.util.Date) value).getTime());
+        } else if (value.getClass() == java.util.Date.class) {
+            out.writeByte(DATE);
+            writeVarLong(out, ((java.util.Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes(out, (byte[]) value);
+        } else if (value instanceof CompactRowSet) {
+            CompactRowSet rowSet = (CompactRowSet) value;
+            out.writeByte(ROW_SET);
+            writeStrings(out, rowSet.getColumnNames());
+            writeVarLong(out, rowSet.size());
+            for (Object[] row : rowSet) {
+                for (Object cell : row) {
+                    write(out, cell);
+                }
+            }
+        } else if (value instanceof Map) {
+            out.writeByte(MAP);
+            writeMapRows(out, Arrays.asList((Map<?, ?>) value));
+        } else if (value instanceof Collection) {
+            writeCollection(out, (Collection<?>) value);
+        } else if (!value.getClass().isArray() && !value.getClass().getName().startsWith("java.")) {
+            out.writeByte(BEAN);
+            writeBeans(out, value.getClass(), Arrays.asList(value));
+        } else {
+            throw new IllegalArgumentException("Unsupported type: " + value.getClass().getName());
+        }
+    }
+
+    private static void writeCollection(DataOutputStream out, Collection<?> values) throws IOException {
+        Object first = values.isEmpty() ? null : values.iterator().next();
+        if (first instanceof Map && sameColumns(values)) {
+            out.writeByte(MAP_LIST);
+            writeMapRows(out, values);
+        } else if (first != null && !(first instanceof Map) && !(first instanceof Collection) && sameClass(values)
+                && !first.getClass().getName().startsWith("java.") && !first.getClass().isArray()) {
+            out.writeByte(BEAN_LIST);
+            writeBeans(out, first.getClass(), values);
+        } else {
+            out.writeByte(LIST);
+            writeVarLong(out, values.size());
+            for (Object element : values) {
+                write(out, element);
+            }
+        }
+    }
+
+    /**
+     * 多个列相同的Map行：列名写一次，随后逐行写值
+     */
+    private static void writeMapRows(DataOutputStream out, Collection<?> rows) throws IOException {
+        Map<?, ?> first = (Map<?, ?>) rows.iterator().next();
+        writeVarLong(out, first.size());
+        for (Object key : first.keySet()) {
+            writeString(out, String.valueOf(key));
+        }
+        writeVarLong(out, rows.size());
+        for (Object row : rows) {
+            for (Object cell : ((Map<?, ?>) row).values()) {
+                write(out, cell);
+            }
+        }
+    }
+
+    private static void writeBeans(DataOutputStream out, Class<?> type, Collection<?> beans) throws IOException {
+        Field[] fields = fields(type);
+        writeString(out, type.getName());
+        writeVarLong(out, fields.length);
+        for (Field field : fields) {
+            writeString(out, field.getName());
+        }
+        writeVarLong(out, beans.size());
+        try {
+            for (Object bean : beans) {
+                for (Field field : fields) {
+                    write(out, field.get(bean));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot read fields of " + type.getName(), e);
+        }
+    }
+
+    private static boolean sameColumns(Collection<?> rows) {
+        Iterator<?> it = rows.iterator();
+        Object[] columns = ((Map<?, ?>) it.next()).keySet().toArray();
+        while (it.hasNext()) {
+            Object row = it.next();
+            if (!(row instanceof Map) || !Arrays.equals(columns, ((Map<?, ?>) row).keySet().toArray())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameClass(Collection<?> values) {
+        Class<?> type = null;
+        for (Object value : values) {
+            if (value == null || (type != null && value.getClass() != type)) {
+                return false;
+            }
+            type = value.getClass();
+        }
+        return true;
+    }
+
+    private static Object read(DataInputStream in, Class<?> beanType) throws IOException, ReflectiveOperationException {
+        byte tag = in.readByte();
+        switch (tag) {
+        case NULL:
+            return null;
+        case STRING:
+            return readString(in);
+        case INT:
+            return (int) readVarLong(in);
+        case LONG:
+            return readVarLong(in);
+        case DOUBLE:
+            return in.readDouble();
+        case FLOAT:
+            return in.readFloat();
+        case SHORT:
+            return in.readShort();
+        case BYTE:
+            return in.readByte();
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        case BIG_DECIMAL:
+            return new BigDecimal(readString(in));
+        case BIG_INTEGER:
+            return new BigInteger(readBytes(in));
+        case TIMESTAMP: {
+            java.sql.Timestamp timestamp = new java.sql.Timestamp(readVarLong(in));
+            timestamp.setNanos((int) readVarLong(in));
+            return timestamp;
+        }
+        case SQL_DATE:
+            return new java.sql.Date(readVarLong(in));
+        case SQL_TIME:
+            return new java.sql.Time(readVarLong(in));
+        case DATE:
+            return new java.util.Date(readVarLong(in));
+        case BYTES:
+            return readBytes(in);
+        case LIST: {
+            int size = readSize(in);
+            List<Object> list = new ArrayList<Object>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(read(in, beanType));
+            }
+            return list;
+        }
+        case ROW_SET:
+            return readRows(in, readStrings(in), beanType);
+        case MAP_LIST: {
+            CompactRowSet rowSet = readRows(in, readStrings(in), beanType);
+            return new ArrayList<Map<String, Object>>(rowSet.asMapList());
+        }
+        case MAP: {
+            CompactRowSet rowSet = readRows(in, readStrings(in), beanType);
+            return rowSet.asMap(0);
+        }
+        case BEAN:
+            return readBeans(in, beanType).get(0);
+        case BEAN_LIST:
+            return readBeans(in, beanType);
+        default:
+            throw new IOException("Unknown tag " + tag);
+        }
+    }
+
+    private static CompactRowSet readRows(DataInputStream in, String[] columns, Class<?> beanType)
+            throws IOException, ReflectiveOperationException {
+        CompactRowSet rowSet = new CompactRowSet(columns);
+        int size = readSize(in);
+        for (int r = 0; r < size; r++) {
+            Object[] row = new Object[columns.length];
+            for (int c = 0; c < columns.length; c++) {
+                row[c] = read(in, beanType);
+            }
+            rowSet.add(row);
+        }
+        rowSet.trimToSize();
+        return rowSet;
+    }
+
+    private static List<Object> readBeans(DataInputStream in, Class<?> beanType) throws IOException, ReflectiveOperationException {
+        String typeName = readString(in);
+        if (beanType == null || !beanType.getName().equals(typeName)) {
+            throw new IOException("Expected " + (beanType == null ? "no bean" : beanType.getName()) + " but found " + typeName);
+        }
+        Map<String, Field> byName = new HashMap<String, Field>();
+        for (Field field : fields(beanType)) {
+            byName.put(field.getName(), field);
+        }
+        // 按名称对应字段，类结构变化时多出的字段忽略
+        Field[] fields = new Field[readSize(in)];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = byName.get(readString(in));
+        }
+        Constructor<?> constructor = beanType.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        int size = readSize(in);
+        List<Object> beans = new ArrayList<Object>(size);
+        for (int r = 0; r < size; r++) {
+            Object bean = constructor.newInstance();
+            for (Field field : fields) {
+                Object value = read(in, beanType);
+                if (field != null && (value != null || !field.getType().isPrimitive())) {
+                    field.set(bean, value);
+                }
+            }
+            beans.add(bean);
+        }
+        return beans;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        writeVarLong(out, values.length);
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] values = new String[readSize(in)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString(in);
+        }
+        return values;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        writeVarLong(out, value.length);
+        out.write(value);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] value = new byte[readSize(in)];
+        in.readFully(value);
+        return value;
+    }
+
+    private static int readSize(DataInputStream in) throws IOException {
+        long size = readVarLong(in);
+        if (size < 0 || size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Invalid size " + size);
+        }
+        return (int) size;
+    }
+
+    /**
+     * zigzag + 变长编码，绝对值小的数只占1~2个字节
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,239 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 基于Redis的查询结果缓存，多个应用节点共享，一个节点的写操作使所有节点上依赖该表的缓存失效
+ * 每个表在Redis中有一个版本号计数器（INCR），缓存条目保存写入时所读表的版本号之和，
+ * 读取时用一次 MGET 同时取回条目和当前版本号，不一致即视为失效；失效只需递增计数器，旧条目等过期自然删除
+ * 结果用 {@link QueryResultCodec} 编码为紧凑的二进制，直接读写字节，不经过 RedisTemplate 的序列化器
+ * Redis 不可用时按未命中处理，不影响查询
+ */
+public class RedisQueryCache implements QueryCache {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final RedisTemplate<?, ?> redisTemplate;
+    private final String prefix;
+    private final byte[] epochKey;
+    private final long ttlSeconds;
+    private final int maxValueBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * @param redisTemplate 使用其连接工厂，不使用其序列化器
+     * @param prefix 键前缀，如 dbutils:qc:
+     * @param ttlSeconds 缓存条目的过期时间（秒）
+     * @param maxValueBytes 编码后超过该大小的结果不缓存
+     */
+    public RedisQueryCache(RedisTemplate<?, ?> redisTemplate, String prefix, long ttlSeconds, int maxValueBytes) {
+        if (ttlSeconds < 1) {
+            throw new IllegalArgumentException("Invalid ttl " + ttlSeconds);
+        }
+        this.redisTemplate = redisTemplate;
+        this.prefix = prefix;
+        this.epochKey = bytes(prefix + "e");
+        this.ttlSeconds = ttlSeconds;
+        this.maxValueBytes = maxValueBytes;
+    }
+
+    @Override
+    public Object get(QueryKey key, Set<String> tables) {
+        final byte[][] keys = versionKeys(tables, 1);
+        keys[0] = entryKey(key);
+        try {
+            List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) conn -> conn.mGet(keys));
+            byte[] entry = values == null ? null : values.get(0);
+            if (entry == null || entry.length < 8 || readLong(entry) != sum(values, 1)) {
+                misses.increment();
+                return null;
+            }
+            Object value = QueryResultCodec.decode(entry, 8, key.getType() instanceof Class ? (Class<?>) key.getType() : null);
+            hits.increment();
+            return value;
+        } catch (RuntimeException e) {
+            errors.increment();
+            misses.increment();
+            log.error("Error occured while attempting to read query cache", e);
+        }
+        return null;
+    }
+
+    @Override
+    public long version(Set<String> tables) {
+        final byte[][] keys = versionKeys(tables, 0);
+        try {
+            List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) conn -> conn.mGet(keys));
+            return values == null ? -1 : sum(values, 0);
+        } catch (RuntimeException e) {
+            errors.increment();
+            log.error("Error occured while attempting to read query cache versions", e);
+        }
+        // 取不到版本号时写入的条目永远不会命中
+        return -1;
+    }
+
+    @Override
+    public void put(QueryKey key, Set<String> tables, Object value, long version) {
+        if (version < 0) {
+            return;
+        }
+        byte[] payload;
+        try {
+            payload = QueryResultCodec.encode(value);
+        } catch (IllegalArgumentException e) {
+            // 含有不支持编码的类型
+            skipped.increment();
+            return;
+        }
+        if (payload.length > maxValueBytes) {
+            skipped.increment();
+            return;
+        }
+        final byte[] entryKey = entryKey(key);
+        final byte[] entry = new byte[payload.length + 8];
+        writeLong(entry, version);
+        System.arraycopy(payload, 0, entry, 8, payload.length);
+        try {
+            redisTemplate.execute((RedisCallback<Object>) conn -> {
+                conn.setEx(entryKey, ttlSeconds, entry);
+                return null;
+            });
+            puts.increment();
+        } catch (RuntimeException e) {
+            errors.increment();
+            log.error("Error occured while attempting to write query cache", e);
+        }
+    }
+
+    @Override
+    public void invalidate(Set<String> tables) {
+        if (tables.isEmpty()) {
+            clear();
+            return;
+        }
+        final byte[][] keys = versionKeys(tables, 0);
+        try {
+            redisTemplate.execute((RedisCallback<Object>) conn -> {
+                conn.openPipeline();
+                // 第0个是全局版本号，不递增
+                for (int i = 1; i < keys.length; i++) {
+                    conn.incr(keys[i]);
+                }
+                conn.closePipeline();
+                return null;
+            });
+            invalidations.increment();
+        } catch (RuntimeException e) {
+            errors.increment();
+            log.error("Error occured while attempting to invalidate query cache", e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            redisTemplate.execute((RedisCallback<Object>) conn -> conn.incr(epochKey));
+            invalidations.increment();
+        } catch (RuntimeException e) {
+            errors.increment();
+            log.error("Error occured while attempting to clear query cache", e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        long hit = hits.sum();
+        long requests = hit + misses.sum();
+        map.put("hits", hit);
+        map.put("misses", requests - hit);
+        map.put("hitRate", requests == 0 ? 0d : (double) hit / requests);
+        map.put("puts", puts.sum());
+        map.put("skipped", skipped.sum());
+        map.put("invalidations", invalidations.sum());
+        map.put("errors", errors.sum());
+        map.put("ttlSeconds", ttlSeconds);
+        return map;
+    }
+
+    /**
+     * 全局版本号和各表版本号的键，前面空出 offset 个位置
+     */
+    private byte[][] versionKeys(Set<String> tables, int offset) {
+        byte[][] keys = new byte[tables.size() + 1 + offset][];
+        keys[offset] = epochKey;
+        int i = offset + 1;
+        for (String table : tables) {
+            keys[i++] = bytes(prefix + "v:" + table);
+        }
+        return keys;
+    }
+
+    /**
+     * 条目的键：查询标识类型化编码的SHA-1，避免长sql占用键空间
+     */
+    private byte[] entryKey(QueryKey key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.encode());
+            StringBuilder sb = new StringBuilder(prefix.length() + 2 + digest.length * 2).append(prefix).append("r:");
+            for (byte b : digest) {
+                sb.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+            }
+            return bytes(sb.toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long sum(List<byte[]> values, int from) {
+        long sum = 0;
+        for (int i = from; i < values.size(); i++) {
+            byte[] value = values.get(i);
+            if (value != null) {
+                sum += Long.parseLong(new String(value, StandardCharsets.US_ASCII));
+            }
+        }
+        return sum;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long readLong(byte[] b) {
+        long v = 0;
+        for (int i = 0; i < 8; i++) {
+            v = (v << 8) | (b[i] & 0xFF);
+        }
+        return v;
+    }
+
+    private static void writeLong(byte[] b, long v) {
+        for (int i = 7; i >= 0; i--) {
+            b[i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 只读从库的负载均衡
+ * 支持平滑加权轮询（与nginx相同的算法）和最少进行中请求两种策略
+ * 每次读取前 {@link #acquire()} 选出一个从库，读取结束后必须 {@link #release(Replica)}
+ * 从库数据源归路由所有，{@link #close()} 时一并关闭
+ */
+public class ReplicaRouter {
+
+    /**
+     * 负载均衡策略
+     */
+    public enum Strategy {
+        /** 平滑加权轮询 */
+        ROUND_ROBIN,
+        /** 按权重折算后进行中请求最少的从库优先 */
+        LEAST_ACTIVE;
+
+        /**
+         * 解析配置值，如 round-robin、least-active，不区分大小写
+         * @param value 配置值
+         * @return 策略，为空时返回 ROUND_ROBIN
+         */
+        public static Strategy parse(String value) {
+            if (value == null || value.trim().length() == 0) {
+                return ROUND_ROBIN;
+            }
+            return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final Strategy strategy;
+    private final List<Replica> replicas = new ArrayList<Replica>();
+
+    public ReplicaRouter(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * 添加从库
+     * @param dataSource 从库数据源
+     * @param weight 权重，小于1时按1处理
+     */
+    public synchronized void addReplica(DataSource dataSource, int weight) {
+        replicas.add(new Replica(dataSource, Math.max(1, weight)));
+    }
+
+    public boolean isEmpty() {
+        return replicas.isEmpty();
+    }
+
+    public List<Replica> getReplicas() {
+        return Collections.unmodifiableList(replicas);
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * 选出一个从库并计入进行中请求
+     * @return 从库，没有配置从库时返回null
+     */
+    public Replica acquire() {
+        Replica selected = strategy == Strategy.LEAST_ACTIVE ? leastActive() : roundRobin();
+        if (selected != null) {
+            selected.active.incrementAndGet();
+        }
+        return selected;
+    }
+
+    /**
+     * 读取结束，进行中请求减一
+     * @param replica acquire() 返回的从库
+     */
+    public void release(Replica replica) {
+        if (replica != null) {
+            replica.active.decrementAndGet();
+        }
+    }
+
+    /**
+     * 关闭所有从库数据源（可关闭的），应用停止时调用
+     */
+    public synchronized void close() {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) replica.dataSource).close();
+                } catch (Exception e) {
+                    log.error("Error occured while attempting to close replica data source", e);
+                }
+            }
+        }
+    }
+
+    private synchronized Replica roundRobin() {
+        Replica best = null;
+        int totalWeight = 0;
+        for (Replica replica : replicas) {
+            replica.currentWeight += replica.weight;
+            totalWeight += replica.weight;
+            if (best == null || replica.currentWeight > best.currentWeight) {
+                best = replica;
+            }
+        }
+        if (best != null) {
+            best.currentWeight -= totalWeight;
+        }
+        return best;
+    }
+
+    private Replica leastActive() {
+        Replica best = null;
+        for (Replica replica : replicas) {
+            // 比较 active/weight，交叉相乘避免除法
+            if (best == null || (long) replica.active.get() * best.weight < (long) best.active.get() * replica.weight) {
+                best = replica;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 从库及其运行状态
+     */
+    public static class Replica {
+
+        private final DataSource dataSource;
+        private final int weight;
+        private final AtomicInteger active = new AtomicInteger();
+        /** 平滑加权轮询的当前权重，只在 roundRobin() 的同步块中访问 */
+        private int currentWeight;
+
+        Replica(DataSource dataSource, int weight) {
+            this.dataSource = dataSource;
+            this.weight = weight;
+        }
+
+        public DataSource getDataSource() {
+            return dataSource;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public int getActive() {
+            return active.get();
+        }
+    }
+}
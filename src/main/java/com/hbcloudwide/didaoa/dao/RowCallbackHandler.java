@@ -0,0 +1,18 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 流式查询的逐行回调
+ * 每读到一行调用一次，实现类只应读取当前行，不要调用 rs.next() 或关闭 rs
+ */
+public interface RowCallbackHandler {
+
+    /**
+     * 处理当前行
+     * @param rs 已定位到当前行的结果集
+     * @throws SQLException
+     */
+    void processRow(ResultSet rs) throws SQLException;
+}
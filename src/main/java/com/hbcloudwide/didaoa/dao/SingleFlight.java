@@ -0,0 +1,90 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并并发的相同查询：同一时刻 sql、参数和结果类型都相同的调用只有第一个真正访问数据库，
+ * 其余调用等待并拿到同一个结果对象；查询结束后立即移除，不缓存，之后的调用重新查询
+ * 合并的调用共享同一个结果对象（同一个List和其中的行），调用方不应修改
+ */
+public class SingleFlight {
+
+    private final ConcurrentMap<QueryKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<QueryKey, CompletableFuture<Object>>();
+
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * 执行查询，已有相同查询在进行时等待其结果
+     * @param key 查询标识
+     * @param loader 实际执行查询
+     * @return 查询结果
+     * @throws SQLException 本次或被合并的那次查询出错
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(QueryKey key, Loader<T> loader) throws SQLException {
+        CompletableFuture<Object> created = new CompletableFuture<Object>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            shared.increment();
+            return (T) await(existing);
+        }
+        T result;
+        try {
+            result = loader.load();
+        } catch (SQLException | RuntimeException | Error e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+        inFlight.remove(key, created);
+        created.complete(result);
+        return result;
+    }
+
+    /**
+     * @return 被合并（没有访问数据库）的调用次数
+     */
+    public long getSharedCount() {
+        return shared.sum();
+    }
+
+    /**
+     * @return 正在进行中的查询数
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private static Object await(CompletableFuture<Object> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a shared query", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw new SQLException(cause.getMessage(), ((SQLException) cause).getSQLState(),
+                        ((SQLException) cause).getErrorCode(), cause);
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * 实际执行查询
+     */
+    public interface Loader<T> {
+
+        T load() throws SQLException;
+    }
+}
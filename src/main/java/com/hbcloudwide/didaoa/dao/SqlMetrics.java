@@ -0,0 +1,124 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.hbcloudwide.didaoa.utils.SqlUtil;
+
+/**
+ * 按语句指纹统计的SQL指标：执行耗时和等待连接耗时分开记录，另有执行次数、返回/影响行数和错误数
+ * 指纹见 {@link SqlUtil#fingerprint(String)}，原始SQL到统计项的映射有缓存，热路径上不重复计算指纹
+ */
+public class SqlMetrics {
+
+    /** 原始SQL缓存的最大条目数，超出时清空重建（拼接了常量的SQL会不断产生新字符串） */
+    private static final int SQL_CACHE_LIMIT = 4096;
+
+    /** 当前的统计表，reset 时整体换成新的，正在记录的线程最多写入被丢弃的旧表 */
+    private volatile Registry registry = new Registry();
+
+    /**
+     * 记录一次执行
+     * @param sql sql语句
+     * @param waitNanos 从连接池获取连接的耗时
+     * @param execNanos 执行及处理结果集的耗时
+     * @param rows 返回或影响的行数
+     * @param failed 是否出错
+     */
+    public void record(String sql, long waitNanos, long execNanos, long rows, boolean failed) {
+        Registry current = registry;
+        StatementStats stats = current.bySql.get(sql);
+        if (stats == null) {
+            if (current.bySql.size() >= SQL_CACHE_LIMIT) {
+                current.bySql.clear();
+            }
+            String fingerprint = SqlUtil.fingerprint(sql);
+            stats = current.byFingerprint.get(fingerprint);
+            if (stats == null) {
+                StatementStats created = new StatementStats(fingerprint);
+                stats = current.byFingerprint.putIfAbsent(fingerprint, created);
+                if (stats == null) {
+                    stats = created;
+                }
+            }
+            current.bySql.put(sql, stats);
+        }
+        stats.wait.record(TimeUnit.NANOSECONDS.toMicros(waitNanos));
+        stats.exec.record(TimeUnit.NANOSECONDS.toMicros(execNanos));
+        stats.rows.add(rows);
+        if (failed) {
+            stats.errors.increment();
+        }
+    }
+
+    /**
+     * 所有语句的统计快照，按总执行耗时降序
+     * @return 每个指纹一个Map，耗时单位为微秒
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<StatementStats> all = new ArrayList<StatementStats>(registry.byFingerprint.values());
+        Collections.sort(all, new Comparator<StatementStats>() {
+            @Override
+            public int compare(StatementStats a, StatementStats b) {
+                return Long.compare(b.exec.getSum(), a.exec.getSum());
+            }
+        });
+        List<Map<String, Object>> result = new ArrayList<Map<String, Object>>(all.size());
+        for (StatementStats stats : all) {
+            Map<String, Object> map = new LinkedHashMap<String, Object>();
+            map.put("sql", stats.fingerprint);
+            map.put("count", stats.exec.getCount());
+            map.put("errors", stats.errors.sum());
+            map.put("rows", stats.rows.sum());
+            map.put("execTotalMicros", stats.exec.getSum());
+            map.put("exec", histogram(stats.exec));
+            map.put("poolWait", histogram(stats.wait));
+            result.add(map);
+        }
+        return result;
+    }
+
+    /**
+     * 清空所有统计：换成一张新的统计表，不会与并发的 record 交错出只在缓存中、不在快照中的统计项
+     */
+    public void reset() {
+        registry = new Registry();
+    }
+
+    private static Map<String, Object> histogram(LatencyHistogram histogram) {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("mean", Math.round(histogram.getMean()));
+        map.put("p50", histogram.getPercentile(50));
+        map.put("p99", histogram.getPercentile(99));
+        map.put("p999", histogram.getPercentile(99.9));
+        map.put("max", histogram.getMax());
+        return map;
+    }
+
+    private static final class Registry {
+
+        final ConcurrentMap<String, StatementStats> byFingerprint = new ConcurrentHashMap<String, StatementStats>();
+        final ConcurrentMap<String, StatementStats> bySql = new ConcurrentHashMap<String, StatementStats>();
+    }
+
+    private static final class StatementStats {
+
+        final String fingerprint;
+        final LatencyHistogram exec = new LatencyHistogram();
+        final LatencyHistogram wait = new LatencyHistogram();
+        final LongAdder rows = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        StatementStats(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
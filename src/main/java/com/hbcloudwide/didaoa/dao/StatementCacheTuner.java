@@ -0,0 +1,128 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.druid.pool.DruidDataSource;
+
+/**
+ * 按实际使用的不同sql个数调整Druid连接池的预编译语句缓存（PSCache，每个物理连接一个LRU）的大小，并汇总其命中统计
+ * 每个统计周期记录执行过的不同sql（语句原文，IN 列表长度不同算不同语句），周期结束时把缓存大小设为该工作集的 1.25 倍，
+ * 限制在 [minSize, maxSize] 内；Druid只在创建连接时读取该值，调整对之后新建（含空闲回收后重建）的连接生效
+ * 需要开启 spring.datasource.poolPreparedStatements
+ */
+public class StatementCacheTuner {
+
+    /** 默认的统计周期（毫秒） */
+    public static final long DEFAULT_WINDOW_MILLIS = 60000;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final List<DruidDataSource> dataSources = new ArrayList<DruidDataSource>();
+    private final int minSize;
+    private final int maxSize;
+    private final long windowMillis;
+
+    private volatile Set<String> window = ConcurrentHashMap.newKeySet();
+    private final AtomicLong windowStart = new AtomicLong(System.currentTimeMillis());
+    private volatile int workingSet;
+    private volatile int size;
+    private volatile long resizes;
+
+    /**
+     * @param dataSources 要调整的连接池，不是Druid连接池或未开启PSCache的忽略
+     * @param minSize 每个连接最少缓存的语句数
+     * @param maxSize 每个连接最多缓存的语句数
+     * @param windowMillis 统计周期（毫秒）
+     */
+    public StatementCacheTuner(List<? extends DataSource> dataSources, int minSize, int maxSize, long windowMillis) {
+        if (minSize < 1 || maxSize < minSize || windowMillis < 1) {
+            throw new IllegalArgumentException("Invalid size range " + minSize + "-" + maxSize + " or window " + windowMillis + "ms");
+        }
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof DruidDataSource && ((DruidDataSource) dataSource).isPoolPreparedStatements()) {
+                this.dataSources.add((DruidDataSource) dataSource);
+            }
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.windowMillis = windowMillis;
+        this.size = this.dataSources.isEmpty() ? 0 : this.dataSources.get(0).getMaxPoolPreparedStatementPerConnectionSize();
+    }
+
+    /**
+     * 记录一次语句执行，周期结束时调整缓存大小
+     * @param sql sql语句
+     */
+    public void record(String sql) {
+        if (dataSources.isEmpty()) {
+            return;
+        }
+        Set<String> current = window;
+        // 超过上限后再记录也不会改变结果
+        if (current.size() <= maxSize) {
+            current.add(sql);
+        }
+        long start = windowStart.get();
+        long now = System.currentTimeMillis();
+        if (now - start >= windowMillis && windowStart.compareAndSet(start, now)) {
+            window = ConcurrentHashMap.newKeySet();
+            resize(current.size());
+        }
+    }
+
+    private void resize(int distinct) {
+        workingSet = distinct;
+        int target = Math.max(minSize, Math.min(maxSize, distinct + (distinct + 3) / 4));
+        if (target == size) {
+            return;
+        }
+        log.info("Resizing prepared statement cache from {} to {} per connection, {} distinct statements in the last {} ms",
+                size, target, distinct, windowMillis);
+        for (DruidDataSource dataSource : dataSources) {
+            dataSource.setMaxPoolPreparedStatementPerConnectionSize(target);
+        }
+        size = target;
+        resizes++;
+    }
+
+    /**
+     * @return 统计信息：所有连接池合计的命中、未命中、淘汰次数和当前缓存的语句数，以及调整情况
+     */
+    public Map<String, Object> stats() {
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        long cached = 0;
+        for (DruidDataSource dataSource : dataSources) {
+            hits += dataSource.getCachedPreparedStatementHitCount();
+            misses += dataSource.getCachedPreparedStatementMissCount();
+            evictions += dataSource.getCachedPreparedStatementDeleteCount();
+            cached += dataSource.getCachedPreparedStatementCount();
+        }
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        long requests = hits + misses;
+        map.put("hits", hits);
+        map.put("misses", misses);
+        map.put("hitRate", requests == 0 ? 0d : (double) hits / requests);
+        map.put("evictions", evictions);
+        map.put("cached", cached);
+        map.put("sizePerConnection", size);
+        map.put("workingSet", workingSet);
+        map.put("minSize", minSize);
+        map.put("maxSize", maxSize);
+        map.put("resizes", resizes);
+        map.put("dataSources", dataSources.size());
+        return map;
+    }
+}
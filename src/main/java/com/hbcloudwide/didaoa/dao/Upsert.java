@@ -0,0 +1,136 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * INSERT ... ON DUPLICATE KEY UPDATE 语句的构造器（MySQL）
+ * 主键或唯一键冲突的行按 update 指定的列更新，没有指定时更新除 keys 外的所有列
+ * 交给 {@link DbUtilsTemplate#upsert} 执行时按块改写成多行 VALUES (...),(...)，每块一条语句
+ * <code>
+ * Upsert upsert = Upsert.into("user").columns("id", "user_name", "pass_word").keys("id");
+ * dbUtilsTemplate.upsert(upsert, users);
+ * </code>
+ */
+public class Upsert {
+
+    private final String table;
+    private List<String> columns = Collections.emptyList();
+    private List<String> keys = Collections.emptyList();
+    private List<String> updates;
+
+    private Upsert(String table) {
+        this.table = table;
+    }
+
+    /**
+     * @param table 表名
+     * @return 构造器
+     */
+    public static Upsert into(String table) {
+        return new Upsert(table);
+    }
+
+    /**
+     * @param columns 插入的列，按参数顺序；Bean按同名属性取值（忽略大小写）
+     * @return 构造器
+     */
+    public Upsert columns(String... columns) {
+        this.columns = Arrays.asList(columns);
+        return this;
+    }
+
+    /**
+     * @param keys 主键或唯一键列，冲突时不更新
+     * @return 构造器
+     */
+    public Upsert keys(String... keys) {
+        this.keys = Arrays.asList(keys);
+        return this;
+    }
+
+    /**
+     * @param updates 冲突时更新的列，不调用时更新除 keys 外的所有列，传空时冲突的行保持不变
+     * @return 构造器
+     */
+    public Upsert update(String... updates) {
+        this.updates = Arrays.asList(updates);
+        return this;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return 冲突时更新的列
+     */
+    public List<String> getUpdates() {
+        if (updates != null) {
+            return updates;
+        }
+        List<String> list = new ArrayList<String>(columns.size());
+        for (String column : columns) {
+            if (!containsIgnoreCase(keys, column)) {
+                list.add(column);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @return 单行的 INSERT ... VALUES (?, ...) ON DUPLICATE KEY UPDATE ... 语句
+     */
+    public String toSql() {
+        if (columns.isEmpty()) {
+            throw new IllegalStateException("No columns to upsert into " + table);
+        }
+        StringBuilder sb = new StringBuilder(64 + columns.size() * 40);
+        sb.append("INSERT INTO ").append(table).append(" (");
+        join(sb, columns);
+        sb.append(") VALUES (");
+        for (int i = 0; i < columns.size(); i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        sb.append(") ON DUPLICATE KEY UPDATE ");
+        List<String> set = getUpdates();
+        if (set.isEmpty()) {
+            // 不更新任何列：把一个列赋值为自身，冲突的行保持不变
+            String column = keys.isEmpty() ? columns.get(0) : keys.get(0);
+            sb.append(column).append(" = ").append(column);
+        } else {
+            for (int i = 0; i < set.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(set.get(i)).append(" = VALUES(").append(set.get(i)).append(')');
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toSql();
+    }
+
+    private static void join(StringBuilder sb, List<String> names) {
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(names.get(i));
+        }
+    }
+
+    private static boolean containsIgnoreCase(List<String> names, String name) {
+        for (String n : names) {
+            if (n.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
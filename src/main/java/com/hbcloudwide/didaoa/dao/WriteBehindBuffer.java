@@ -0,0 +1,288 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import com.hbcloudwide.didaoa.utils.SqlUtil;
+
+/**
+ * 后写缓冲：同一行的多次更新先在内存中按主键合并，定时在一个事务中批量写入，用于计数器、状态等热点行
+ * LATEST 模式只保留最后一次的值，如 UPDATE user SET status = ? WHERE id = ?；
+ * SUM 模式累加增量，如 UPDATE user SET login_count = login_count + ? WHERE id = ?
+ * 语句的最后一个占位符是主键，前面依次是 write 传入的值
+ * 缓冲的主键数达到上限时，新主键的写入会触发立即写库并阻塞等待（背压）；已缓冲主键的写入总是直接合并
+ * 写库失败时数据合并回缓冲等下次重试；进程退出前应调用 close 同步写出剩余数据，未写出的数据会丢失：
+ * 由 {@link DbUtilsTemplate#writeBehindBuffer} 创建的缓冲在模板销毁（Spring容器关闭）时自动关闭，直接创建的应注册为bean或自行关闭
+ * <code>
+ * WriteBehindBuffer&lt;Long&gt; logins = dbUtilsTemplate.writeBehindBuffer(
+ *         "UPDATE user SET login_count = login_count + ? WHERE id = ?", WriteBehindBuffer.Mode.SUM);
+ * logins.write(userId, 1);
+ * </code>
+ */
+public class WriteBehindBuffer<K> implements DisposableBean {
+
+    /** 默认的写库间隔（毫秒） */
+    public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+    /** 默认最多缓冲的主键数 */
+    public static final int DEFAULT_MAX_KEYS = 10000;
+
+    /** 背压等待时每次等待的最长时间（毫秒），防止错过通知 */
+    private static final long BACKPRESSURE_WAIT_MILLIS = 100;
+
+    /**
+     * 同一主键的多次写入的合并方式
+     */
+    public enum Mode {
+        /** 保留最后一次的值 */
+        LATEST,
+        /** 累加，值必须是数字 */
+        SUM
+    }
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final DbUtilsTemplate template;
+    /** 定时线程由模板持有，同一模板的所有后写缓冲共用，模板销毁时关闭 */
+    private final ScheduledExecutorService timer;
+    private final String sql;
+    private final Mode mode;
+    private final int width;
+    private final int maxKeys;
+    private final ScheduledFuture<?> schedule;
+
+    private Map<K, Object[]> pending = new LinkedHashMap<K, Object[]>();
+    private boolean closed;
+
+    /** 保证同一时间只有一次写库，避免旧值在新值之后写入 */
+    private final Object flushLock = new Object();
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+
+    /**
+     * @param template 执行写入的模板
+     * @param sql 更新语句，最后一个占位符是主键
+     * @param mode 合并方式
+     * @param intervalMillis 写库间隔（毫秒）
+     * @param maxKeys 最多缓冲的主键数
+     */
+    public WriteBehindBuffer(DbUtilsTemplate template, String sql, Mode mode, long intervalMillis, int maxKeys) {
+        int placeholders = SqlUtil.countPlaceholders(sql);
+        if (placeholders < 2) {
+            throw new IllegalArgumentException("Write-behind sql needs at least one value and a key placeholder: " + sql);
+        }
+        if (intervalMillis < 1 || maxKeys < 1) {
+            throw new IllegalArgumentException("Invalid interval " + intervalMillis + "ms or size " + maxKeys);
+        }
+        this.template = template;
+        this.timer = template.batchTimer("dbutils-write-behind");
+        this.sql = sql;
+        this.mode = mode;
+        this.width = placeholders - 1;
+        this.maxKeys = maxKeys;
+        this.schedule = timer.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 写入一行的新值（LATEST）或增量（SUM），与该主键已缓冲的数据合并
+     * @param key 主键
+     * @param values 值，个数为语句中除主键外的占位符数
+     */
+    public void write(K key, Object... values) {
+        if (values.length != width) {
+            throw new IllegalArgumentException("Expected " + width + " values but got " + values.length);
+        }
+        if (mode == Mode.SUM) {
+            for (Object value : values) {
+                if (!(value instanceof Number)) {
+                    throw new IllegalArgumentException("SUM mode needs numeric values, got " + value);
+                }
+            }
+        }
+        boolean waited = false;
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    throw new IllegalStateException("Write-behind buffer is closed");
+                }
+                if (pending.size() < maxKeys || pending.containsKey(key)) {
+                    break;
+                }
+                if (!waited) {
+                    waited = true;
+                    blocked.increment();
+                    try {
+                        timer.execute(this::flushQuietly);
+                    } catch (RejectedExecutionException e) {
+                        // 模板已销毁，没有线程会写库，本次写入允许超出上限
+                        break;
+                    }
+                }
+                try {
+                    wait(BACKPRESSURE_WAIT_MILLIS);
+                } catch (InterruptedException e) {
+                    // 被中断时不再等待，本次写入允许超出上限
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            merge(pending, key, values.clone());
+        }
+        writes.increment();
+    }
+
+    /**
+     * 立即同步写出当前缓冲的数据
+     * @return 是否成功，失败时数据已合并回缓冲
+     */
+    public boolean flush() {
+        synchronized (flushLock) {
+            Map<K, Object[]> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return true;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<K, Object[]>();
+                notifyAll();
+            }
+            try {
+                // 生成参数出错时同样把数据合并回缓冲
+                final Object[][] params = toParams(batch);
+                template.inTransaction(status -> template.batchUpdate(sql, params));
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.error("Error occured while attempting to flush {} buffered rows, they will be retried", batch.size(), e);
+                synchronized (this) {
+                    // 失败期间的新写入比旧数据新，LATEST 模式下以新写入为准
+                    Map<K, Object[]> newer = pending;
+                    pending = batch;
+                    for (Map.Entry<K, Object[]> entry : newer.entrySet()) {
+                        merge(pending, entry.getKey(), entry.getValue());
+                    }
+                }
+                return false;
+            }
+            flushes.increment();
+            flushedRows.add(batch.size());
+            return true;
+        }
+    }
+
+    /**
+     * 停止定时写库并同步写出剩余数据，之后不再接受写入
+     * @return 剩余数据是否全部写出
+     */
+    public boolean close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        schedule.cancel(false);
+        template.writeBehindBufferClosed(this);
+        return flush();
+    }
+
+    /**
+     * 作为bean注册时，容器关闭前写出剩余数据
+     */
+    @Override
+    public void destroy() {
+        close();
+    }
+
+    /**
+     * @return 当前缓冲的主键数
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * @return 统计信息：写入次数、实际写库的行数（两者之差即合并掉的更新）、写库次数、失败次数、背压次数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("writes", writes.sum());
+        map.put("flushedRows", flushedRows.sum());
+        map.put("flushes", flushes.sum());
+        map.put("failures", failures.sum());
+        map.put("blocked", blocked.sum());
+        map.put("pending", size());
+        map.put("maxKeys", maxKeys);
+        return map;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Error occured while attempting to flush buffered rows", e);
+        }
+    }
+
+    private void merge(Map<K, Object[]> map, K key, Object[] values) {
+        Object[] old = map.get(key);
+        if (old == null || mode == Mode.LATEST) {
+            map.put(key, values);
+            return;
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = add((Number) old[i], (Number) values[i]);
+        }
+        map.put(key, values);
+    }
+
+    private static Number add(Number a, Number b) {
+        if (isIntegral(a) && isIntegral(b)) {
+            return a.longValue() + b.longValue();
+        }
+        return a.doubleValue() + b.doubleValue();
+    }
+
+    private static boolean isIntegral(Number n) {
+        return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+    }
+
+    /**
+     * 按主键排序生成参数行（主键可比较时），多个实例并发写同一批行时加锁顺序一致，减少死锁
+     * 主键类型混杂无法相互比较时按写入顺序
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object[][] toParams(Map<K, Object[]> batch) {
+        List<K> keys = new ArrayList<K>(batch.keySet());
+        if (!keys.isEmpty() && keys.get(0) instanceof Comparable) {
+            try {
+                Collections.sort((List<Comparable>) keys);
+            } catch (ClassCastException e) {
+                keys = new ArrayList<K>(batch.keySet());
+            }
+        }
+        Object[][] params = new Object[keys.size()][];
+        for (int i = 0; i < params.length; i++) {
+            K key = keys.get(i);
+            Object[] values = batch.get(key);
+            Object[] row = new Object[width + 1];
+            System.arraycopy(values, 0, row, 0, width);
+            row[width] = key;
+            params[i] = row;
+        }
+        return params;
+    }
+}
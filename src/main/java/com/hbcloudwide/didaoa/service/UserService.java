@@ -1,13 +1,21 @@
 package com.hbcloudwide.didaoa.service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.PostConstruct;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.hbcloudwide.didaoa.dao.BatchLoader;
 import com.hbcloudwide.didaoa.dao.DbUtilsTemplate;
+import com.hbcloudwide.didaoa.dao.Page;
+import com.hbcloudwide.didaoa.dao.Upsert;
 import com.hbcloudwide.didaoa.dao.UserMapper;
 import com.hbcloudwide.didaoa.domain.User;
 import com.hbcloudwide.didaoa.utils.ObjToolsUtil;
@@ -38,6 +46,15 @@ public class UserService{
 	 @Autowired
 	 private DbUtilsTemplate dbu; 
 
+	 private static final Upsert USER_UPSERT = Upsert.into("user").columns("id", "user_name", "pass_word").keys("id");
+
+	 private BatchLoader<Long, User> userLoader;
+
+	 @PostConstruct
+	 public void init() {
+		 userLoader = dbu.batchLoader(User.class, "SELECT * FROM user WHERE id IN (?)", User::getId);
+	 }
+
 	
 	/**
 	 * 获取所有用户信息
@@ -50,6 +67,54 @@ public class UserService{
 		return userList;
 	}
 	
+	/**
+	 * 按id分页获取用户信息
+	 * @param afterId 上一页最后一个用户的id，第一页传null
+	 * @param size 每页条数
+	 * @return 一页用户，第一页带总数
+	 */
+	public Page<User> getUserPage(Long afterId, int size) {
+		String sql = "SELECT * FROM user";
+		return dbu.findPage(User.class, sql, "id", afterId, size, null, afterId == null);
+	}
+	
+	/**
+	 * 按id获取用户，同一时间窗口内的多次调用合并为一条 IN 查询
+	 * @param id 用户id
+	 * @return 用户，不存在时为null
+	 */
+	public CompletableFuture<User> getUserById(long id) {
+		return userLoader.load(id);
+	}
+	
+	/**
+	 * 按id批量获取用户
+	 * @param ids 用户id
+	 * @return id到用户的映射，不存在的id对应null
+	 */
+	public Map<Long, User> getUsersByIds(Collection<Long> ids) {
+		return userLoader.loadMany(ids);
+	}
+	
+	/**
+	 * 批量新增用户，新用户的id写回到User对象中
+	 * @param users 用户
+	 * @return 新增的条数
+	 */
+	public int saveUsers(List<User> users) {
+		String sql = "INSERT INTO user (user_name, pass_word) VALUES (?, ?)";
+		return dbu.insertBatch(sql, users, "id", "user_name", "pass_word").length;
+	}
+	
+	/**
+	 * 同步外部用户数据：按id批量插入，已存在的用户更新用户名和密码
+	 * @param users 用户，需带id
+	 * @return 受影响行数
+	 */
+	public long syncUsers(List<User> users) {
+		return dbu.upsert(USER_UPSERT, users);
+	}
+	
 	public  void updateUser() {
 		
 	}
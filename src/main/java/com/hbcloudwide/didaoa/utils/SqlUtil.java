@@ -0,0 +1,489 @@
+package com.hbcloudwide.didaoa.utils;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * SQL文本处理工具
+ * 只做轻量的词法扫描（跳过字符串、反引号标识符和注释），不是完整的SQL解析器
+ */
+public class SqlUtil {
+
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN \\(\\?(?: ?, ?\\?)*\\)");
+
+    private static final Pattern VALUES_LIST = Pattern.compile("(\\([?, ]*\\))(?: ?, ?\\([?, ]*\\))+");
+
+    /** INSERT 和表名之间可以出现的关键字 */
+    private static final String[] INSERT_MODIFIERS = { "LOW_PRIORITY", "DELAYED", "HIGH_PRIORITY", "IGNORE", "INTO" };
+
+    private SqlUtil() {
+    }
+
+    /**
+     * 将单行的 INSERT/REPLACE ... VALUES (...) 语句拆成三段：
+     * [0] VALUES 之前的部分（含VALUES），[1] 括号内的一组值（含括号），[2] 之后的部分（如 ON DUPLICATE KEY UPDATE ...）
+     * 用于改写成多行 VALUES (...),(...)
+     * @param sql sql语句
+     * @return 拆分结果，不是可改写的单行INSERT或值列表之外有占位符时返回null
+     */
+    public static String[] splitInsertValues(String sql) {
+        int i = skipWhitespaceAndComments(sql, 0);
+        if (startsWithKeyword(sql, i, "INSERT")) {
+            i += 6;
+        } else if (startsWithKeyword(sql, i, "REPLACE")) {
+            i += 7;
+        } else {
+            return null;
+        }
+        // INSERT [修饰词] [INTO] 表名 [PARTITION (...)] [(列名)] VALUES，VALUES 须紧跟在列名之后，
+        // 不能到后面去找：INSERT ... SELECT ... ON DUPLICATE KEY UPDATE c = VALUES(c) 中的 VALUES 是函数
+        i = skipWhitespaceAndComments(sql, i);
+        String keyword;
+        while ((keyword = startingKeyword(sql, i, INSERT_MODIFIERS)) != null) {
+            i = skipWhitespaceAndComments(sql, i + keyword.length());
+        }
+        i = skipName(sql, i);
+        if (i < 0) {
+            return null;
+        }
+        i = skipWhitespaceAndComments(sql, i);
+        if (startsWithKeyword(sql, i, "PARTITION")) {
+            i = skipWhitespaceAndComments(sql, i + 9);
+            if (i >= sql.length() || sql.charAt(i) != '(' || (i = matchingParen(sql, i)) < 0) {
+                return null;
+            }
+            i = skipWhitespaceAndComments(sql, i + 1);
+        }
+        if (i < sql.length() && sql.charAt(i) == '(') {
+            i = matchingParen(sql, i);
+            if (i < 0) {
+                return null;
+            }
+            i = skipWhitespaceAndComments(sql, i + 1);
+        }
+        int keywordLength;
+        if (startsWithKeyword(sql, i, "VALUES")) {
+            keywordLength = 6;
+        } else if (startsWithKeyword(sql, i, "VALUE")) {
+            keywordLength = 5;
+        } else {
+            return null;
+        }
+        int open = skipWhitespaceAndComments(sql, i + keywordLength);
+        if (open >= sql.length() || sql.charAt(open) != '(') {
+            return null;
+        }
+        int close = matchingParen(sql, open);
+        if (close < 0) {
+            return null;
+        }
+        // 已经是多行VALUES的不再改写
+        int after = skipWhitespaceAndComments(sql, close + 1);
+        if (after < sql.length() && sql.charAt(after) == ',') {
+            return null;
+        }
+        String[] parts = { sql.substring(0, open), sql.substring(open, close + 1), sql.substring(close + 1) };
+        // 值列表之外有占位符（如 ON DUPLICATE KEY UPDATE b = b + ?）时，参数无法按行平铺
+        if (countPlaceholders(parts[0]) > 0 || countPlaceholders(parts[2]) > 0) {
+            return null;
+        }
+        return parts;
+    }
+
+    /**
+     * 由 splitInsertValues 的结果拼出 rows 行的 INSERT 语句
+     * @param parts splitInsertValues 的返回值
+     * @param rows 行数
+     * @return 多行INSERT语句
+     */
+    public static String multiRowInsert(String[] parts, int rows) {
+        StringBuilder sb = new StringBuilder(parts[0].length() + parts[2].length() + (parts[1].length() + 1) * rows);
+        sb.append(parts[0]);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(parts[1]);
+        }
+        sb.append(parts[2]);
+        return sb.toString();
+    }
+
+    /**
+     * 语句指纹：去掉注释，字符串和数字常量替换为 ?，空白压缩为一个空格，
+     * IN (?, ?, ...) 和多行 VALUES (...),(...) 压缩为一组，只是参数个数不同的语句得到相同的指纹
+     * @param sql sql语句
+     * @return 指纹
+     */
+    public static String fingerprint(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            int next = next(sql, i);
+            if (c == '\'' || c == '"') {
+                sb.append('?');
+            } else if (c == '`') {
+                sb.append(sql, i, next);
+            } else if (Character.isWhitespace(c) || next > i + 1) {
+                // 空白和注释
+                if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+                    sb.append(' ');
+                }
+            } else if (Character.isDigit(c) && (i == 0 || !isIdentifierChar(sql.charAt(i - 1)))) {
+                while (next < sql.length() && (isIdentifierChar(sql.charAt(next)) || sql.charAt(next) == '.')) {
+                    next++;
+                }
+                sb.append('?');
+            } else {
+                sb.append(c);
+            }
+            i = next;
+        }
+        String fingerprint = sb.toString().trim();
+        fingerprint = IN_LIST.matcher(fingerprint).replaceAll("IN (?...)");
+        return VALUES_LIST.matcher(fingerprint).replaceAll("$1,...");
+    }
+
+    /**
+     * 语句读写的表名：FROM、JOIN、UPDATE、INTO、TABLE 之后的表（含子查询中的），去掉库名和反引号并转为小写
+     * 只用于缓存失效判断，宁多勿少：偶尔会把函数参数等误认为表名
+     * @param sql sql语句
+     * @return 表名，识别不出时为空集合
+     */
+    public static Set<String> tables(String sql) {
+        Set<String> tables = new LinkedHashSet<String>();
+        for (int i = 0; i < sql.length(); i = next(sql, i)) {
+            if (i > 0 && isIdentifierChar(sql.charAt(i - 1))) {
+                continue;
+            }
+            boolean list = startsWithKeyword(sql, i, "FROM") || startsWithKeyword(sql, i, "UPDATE");
+            if (!list && !startsWithKeyword(sql, i, "JOIN") && !startsWithKeyword(sql, i, "INTO")
+                    && !startsWithKeyword(sql, i, "TABLE")) {
+                continue;
+            }
+            int p = i;
+            while (p < sql.length() && isIdentifierChar(sql.charAt(p))) {
+                p++;
+            }
+            while (true) {
+                p = skipWhitespaceAndComments(sql, p);
+                int end = identifierEnd(sql, p);
+                if (end == p) {
+                    break;
+                }
+                String name = sql.substring(p, end);
+                name = name.substring(name.lastIndexOf('.') + 1).replace("`", "").toLowerCase(Locale.ENGLISH);
+                if (name.length() > 0 && !name.equals("dual")) {
+                    tables.add(name);
+                }
+                if (!list) {
+                    break;
+                }
+                // FROM a t1, b t2 / UPDATE a, b：跳过别名后看是否还有逗号
+                p = skipWhitespaceAndComments(sql, end);
+                if (startsWithKeyword(sql, p, "AS")) {
+                    p = skipWhitespaceAndComments(sql, p + 2);
+                }
+                int alias = identifierEnd(sql, p);
+                if (alias > p) {
+                    int q = skipWhitespaceAndComments(sql, alias);
+                    if (q < sql.length() && sql.charAt(q) == ',') {
+                        p = q;
+                    }
+                }
+                if (p >= sql.length() || sql.charAt(p) != ',') {
+                    break;
+                }
+                p++;
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * 统计语句中的 ? 占位符个数（不含字符串和注释中的）
+     * @param sql sql语句
+     * @return 占位符个数
+     */
+    public static int countPlaceholders(String sql) {
+        int count = 0;
+        for (int i = 0; i < sql.length(); i = next(sql, i)) {
+            if (sql.charAt(i) == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 第 n 个 ? 占位符（从0开始，不含字符串和注释中的）的位置
+     * @param sql sql语句
+     * @param n 占位符序号
+     * @return 位置，不存在时返回-1
+     */
+    public static int indexOfPlaceholder(String sql, int n) {
+        for (int i = 0; i < sql.length(); i = next(sql, i)) {
+            if (sql.charAt(i) == '?' && n-- == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 将 pos 处的一个 ? 展开为 count 个，用逗号分隔，如 IN (?) 展开为 IN (?, ?, ?)
+     * @param sql sql语句
+     * @param pos 占位符位置，见 indexOfPlaceholder
+     * @param count 展开后的个数，至少为1
+     * @return 展开后的sql
+     */
+    public static String expandPlaceholder(String sql, int pos, int count) {
+        StringBuilder sb = new StringBuilder(sql.length() + count * 3);
+        sb.append(sql, 0, pos).append('?');
+        for (int i = 1; i < count; i++) {
+            sb.append(", ?");
+        }
+        return sb.append(sql, pos + 1, sql.length()).toString();
+    }
+
+    /**
+     * 把命名参数 :name 替换为 ?，名字按出现顺序加入 names（同名多次出现时加入多次）
+     * 字符串、反引号标识符和注释中的冒号不处理，:= 赋值和 :: 不是命名参数
+     * @param sql 带命名参数的sql语句
+     * @param names 输出参数名
+     * @return 使用 ? 占位符的sql
+     */
+    public static String parseNamedParameters(String sql, List<String> names) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            int next = next(sql, i);
+            if (c == ':' && next == i + 1) {
+                if (sql.startsWith("::", i)) {
+                    sb.append("::");
+                    i += 2;
+                    continue;
+                }
+                int end = i + 1;
+                while (end < sql.length() && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_')) {
+                    end++;
+                }
+                if (end > i + 1) {
+                    names.add(sql.substring(i + 1, end));
+                    sb.append('?');
+                    i = end;
+                    continue;
+                }
+            }
+            sb.append(sql, i, next);
+            i = next;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * IN 列表展开后的占位符个数：不小于 n 的2的幂次，使不同长度的列表只产生少数几种语句；
+     * 超过 maxBucket 时按 maxBucket 的倍数取整
+     * @param n 列表长度
+     * @param maxBucket 最大的2的幂次档位
+     * @return 占位符个数，至少为1
+     */
+    public static int bucketSize(int n, int maxBucket) {
+        if (n <= 1) {
+            return 1;
+        }
+        if (n > maxBucket) {
+            return (n + maxBucket - 1) / maxBucket * maxBucket;
+        }
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * 查找不在字符串、标识符和注释中的关键字（忽略大小写，按整词匹配）
+     * @param sql sql语句
+     * @param keyword 关键字
+     * @param from 起始位置
+     * @return 关键字的位置，找不到时返回-1
+     */
+    public static int indexOfKeyword(String sql, String keyword, int from) {
+        for (int i = from; i < sql.length(); i = next(sql, i)) {
+            if (startsWithKeyword(sql, i, keyword) && (i == 0 || !isIdentifierChar(sql.charAt(i - 1)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 查找不在括号（子查询、函数调用）内的关键字，用法同 indexOfKeyword
+     * @param sql sql语句
+     * @param keyword 关键字
+     * @param from 起始位置
+     * @return 关键字的位置，找不到时返回-1
+     */
+    public static int indexOfTopLevelKeyword(String sql, String keyword, int from) {
+        int depth = 0;
+        for (int i = from; i < sql.length(); i = next(sql, i)) {
+            char c = sql.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && startsWithKeyword(sql, i, keyword)
+                    && (i == 0 || !isIdentifierChar(sql.charAt(i - 1)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 与 open 处的左括号匹配的右括号位置
+     * @param sql sql语句
+     * @param open 左括号位置
+     * @return 右括号位置，不匹配时返回-1
+     */
+    public static int matchingParen(String sql, int open) {
+        int depth = 0;
+        for (int i = open; i < sql.length(); i = next(sql, i)) {
+            char c = sql.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 从 i 开始跳过空白和注释
+     */
+    static int skipWhitespaceAndComments(String sql, int i) {
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (isCommentStart(sql, i)) {
+                i = next(sql, i);
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * 下一个词法位置：字符串、反引号标识符、注释整体跳过，其余字符逐个前进
+     */
+    static int next(String sql, int i) {
+        char c = sql.charAt(i);
+        if (c == '\'' || c == '"' || c == '`') {
+            int j = i + 1;
+            while (j < sql.length()) {
+                char d = sql.charAt(j);
+                if (d == '\\' && c != '`') {
+                    j += 2;
+                } else if (d == c) {
+                    if (j + 1 < sql.length() && sql.charAt(j + 1) == c) {
+                        j += 2;
+                    } else {
+                        return j + 1;
+                    }
+                } else {
+                    j++;
+                }
+            }
+            return sql.length();
+        }
+        if (c == '#' || (c == '-' && sql.startsWith("-- ", i)) || (c == '-' && sql.startsWith("--\n", i))) {
+            int end = sql.indexOf('\n', i);
+            return end < 0 ? sql.length() : end + 1;
+        }
+        if (c == '/' && sql.startsWith("/*", i)) {
+            int end = sql.indexOf("*/", i + 2);
+            return end < 0 ? sql.length() : end + 2;
+        }
+        return i + 1;
+    }
+
+    /**
+     * 从 i 开始的（可能带库名、反引号的）标识符的结束位置，不是标识符时返回 i
+     */
+    private static int identifierEnd(String sql, int i) {
+        int p = i;
+        while (p < sql.length()) {
+            char c = sql.charAt(p);
+            if (c == '`') {
+                p = next(sql, p);
+            } else if (isIdentifierChar(c)) {
+                while (p < sql.length() && isIdentifierChar(sql.charAt(p))) {
+                    p++;
+                }
+            } else {
+                break;
+            }
+            if (p < sql.length() && sql.charAt(p) == '.') {
+                p++;
+            } else {
+                break;
+            }
+        }
+        return p;
+    }
+
+    private static boolean isCommentStart(String sql, int i) {
+        char c = sql.charAt(i);
+        return c == '#' || sql.startsWith("-- ", i) || sql.startsWith("--\n", i) || sql.startsWith("/*", i);
+    }
+
+    private static boolean startsWithKeyword(String sql, int i, String keyword) {
+        int end = i + keyword.length();
+        return sql.regionMatches(true, i, keyword, 0, keyword.length())
+                && (end >= sql.length() || !isIdentifierChar(sql.charAt(end)));
+    }
+
+    /**
+     * i 处是 keywords 中的哪个关键字，都不是时返回null
+     */
+    private static String startingKeyword(String sql, int i, String[] keywords) {
+        for (String keyword : keywords) {
+            if (startsWithKeyword(sql, i, keyword)) {
+                return keyword;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 跳过表名，可带库名和反引号，如 db.`user`
+     * @return 表名之后的位置，i 处不是表名时返回-1
+     */
+    private static int skipName(String sql, int i) {
+        int begin = i;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '`') {
+                int end = sql.indexOf('`', i + 1);
+                if (end < 0) {
+                    return -1;
+                }
+                i = end + 1;
+            } else if (isIdentifierChar(c) || c == '.') {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i == begin ? -1 : i;
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
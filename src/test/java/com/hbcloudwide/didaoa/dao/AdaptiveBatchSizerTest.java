@@ -0,0 +1,49 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AdaptiveBatchSizerTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void growsByConstantStepBelowTarget() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 800, 50, 100000, 100);
+        sizer.record(800, 10 * MS);
+        int first = sizer.nextSize();
+        sizer.record(first, 10 * MS);
+        int second = sizer.nextSize();
+        assertEquals(900, first);
+        assertEquals(first - 800, second - first);
+    }
+
+    @Test
+    public void stopsAtMaxSize() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 950, 50, 1000, 100);
+        sizer.record(950, 10 * MS);
+        assertEquals(1000, sizer.nextSize());
+        sizer.record(1000, 10 * MS);
+        assertEquals(1000, sizer.nextSize());
+    }
+
+    @Test
+    public void halvesAboveTarget() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 800, 50, 1000);
+        sizer.record(800, 300 * MS);
+        assertEquals(400, sizer.nextSize());
+        sizer.record(400, 300 * MS);
+        sizer.record(200, 300 * MS);
+        sizer.record(100, 300 * MS);
+        assertEquals(50, sizer.nextSize());
+    }
+
+    @Test
+    public void partialChunkDoesNotGrow() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 800, 50, 1000);
+        sizer.record(30, MS);
+        assertEquals(800, sizer.nextSize());
+        assertEquals(30000L, sizer.stats().get("rowsPerSecond"));
+    }
+}
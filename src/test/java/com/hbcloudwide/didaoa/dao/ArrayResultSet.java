@@ -0,0 +1,82 @@
+package com.hbcloudwide.didaoa.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+
+/**
+ * 基于内存数组的只进结果集，测试结果集处理器时代替数据库
+ */
+final class ArrayResultSet {
+
+    private ArrayResultSet() {
+    }
+
+    /**
+     * @param columns 列名
+     * @param types 列的 java.sql.Types 类型
+     * @param data 各行的值，null 表示数据库NULL
+     * @return 结果集
+     */
+    static ResultSet of(final String[] columns, final int[] types, final Object[][] data) {
+        final ResultSetMetaData meta = (ResultSetMetaData) Proxy.newProxyInstance(
+                ArrayResultSet.class.getClassLoader(), new Class<?>[] { ResultSetMetaData.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String m = method.getName();
+                        if (m.equals("getColumnCount")) {
+                            return columns.length;
+                        } else if (m.equals("getColumnLabel") || m.equals("getColumnName")) {
+                            return columns[(Integer) args[0] - 1];
+                        } else if (m.equals("getColumnType")) {
+                            return types[(Integer) args[0] - 1];
+                        }
+                        throw new UnsupportedOperationException(m);
+                    }
+                });
+        return (ResultSet) Proxy.newProxyInstance(ArrayResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+                    private int row = -1;
+                    private boolean wasNull;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String m = method.getName();
+                        if (m.equals("next")) {
+                            return ++row < data.length;
+                        } else if (m.equals("getMetaData")) {
+                            return meta;
+                        } else if (m.equals("wasNull")) {
+                            return wasNull;
+                        } else if (m.equals("close")) {
+                            return null;
+                        } else if (m.startsWith("get") && args != null && args[0] instanceof Integer) {
+                            Object value = data[row][(Integer) args[0] - 1];
+                            wasNull = value == null;
+                            return convert(value, method.getReturnType());
+                        }
+                        throw new UnsupportedOperationException(m);
+                    }
+                });
+    }
+
+    private static Object convert(Object value, Class<?> type) {
+        if (type == Object.class) {
+            return value;
+        } else if (type == String.class) {
+            return value == null ? null : value.toString();
+        } else if (type == long.class) {
+            return value == null ? 0L : ((Number) value).longValue();
+        } else if (type == int.class) {
+            return value == null ? 0 : ((Number) value).intValue();
+        } else if (type == double.class) {
+            return value == null ? 0d : ((Number) value).doubleValue();
+        } else if (type == boolean.class) {
+            return value != null && (Boolean) value;
+        }
+        return value;
+    }
+}
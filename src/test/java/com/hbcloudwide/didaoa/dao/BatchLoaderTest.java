@@ -0,0 +1,90 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.hbcloudwide.didaoa.domain.User;
+
+public class BatchLoaderTest {
+
+    private static final String SQL = "SELECT * FROM user WHERE id IN (?)";
+
+    @Test
+    public void keysAreLoadedInOneQuery() throws Exception {
+        RecordingTemplate template = new RecordingTemplate(1L, 2L, 3L);
+        BatchLoader<Long, User> loader = new BatchLoader<Long, User>(template, User.class, SQL, User::getId, 60000, 3);
+        CompletableFuture<User> a = loader.load(1L);
+        CompletableFuture<User> b = loader.load(2L);
+        CompletableFuture<User> c = loader.load(3L);
+        assertEquals(1L, a.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(2L, b.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(3L, c.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(1, template.queries.size());
+        assertEquals(Arrays.asList(1L, 2L, 3L), template.queries.get(0));
+    }
+
+    @Test
+    public void duplicateKeysShareOneLookup() throws Exception {
+        RecordingTemplate template = new RecordingTemplate(1L, 2L);
+        BatchLoader<Long, User> loader = new BatchLoader<Long, User>(template, User.class, SQL, User::getId, 60000, 100);
+        CompletableFuture<User> first = loader.load(1L);
+        loader.load(2L);
+        assertSame(first, loader.load(1L));
+        loader.flush();
+        assertEquals(1L, first.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(1, template.queries.size());
+        assertEquals(Arrays.asList(1L, 2L), template.queries.get(0));
+    }
+
+    @Test
+    public void missingKeyLoadsNull() throws Exception {
+        RecordingTemplate template = new RecordingTemplate(1L);
+        BatchLoader<Long, User> loader = new BatchLoader<Long, User>(template, User.class, SQL, User::getId, 60000, 100);
+        CompletableFuture<User> found = loader.load(1L);
+        CompletableFuture<User> missing = loader.load(9L);
+        loader.flush();
+        assertEquals(1L, found.get(5, TimeUnit.SECONDS).getId());
+        assertNull(missing.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 不访问数据库，记录每次查询的主键，只返回 existing 中的记录
+     */
+    private static class RecordingTemplate extends DbUtilsTemplate {
+
+        final List<List<Object>> queries = Collections.synchronizedList(new ArrayList<List<Object>>());
+        private final List<Long> existing;
+
+        RecordingTemplate(Long... existing) {
+            super(null);
+            this.existing = Arrays.asList(existing);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> find(Class<T> entityClass, String sql, Object[] params) {
+            List<Object> keys = new ArrayList<Object>((Collection<?>) params[0]);
+            queries.add(keys);
+            List<T> rows = new ArrayList<T>();
+            for (Object key : keys) {
+                if (existing.contains(key)) {
+                    User user = new User();
+                    user.setId((Long) key);
+                    rows.add((T) user);
+                }
+            }
+            return rows;
+        }
+    }
+}
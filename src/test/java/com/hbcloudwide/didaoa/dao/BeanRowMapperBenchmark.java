@@ -0,0 +1,206 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.dbutils.handlers.BeanListHandler;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hbcloudwide.didaoa.domain.User;
+
+/**
+ * BeanRowMapper 与 commons-dbutils BeanListHandler 的映射耗时对比
+ * 使用内存中的结果集，只衡量映射本身，不需要数据库；映射结果的正确性由 BeanRowMapperTest 覆盖
+ * 手动运行：mvn test -Dtest=BeanRowMapperBenchmark（先去掉 @Ignore）
+ */
+@Ignore("性能对比，手动运行")
+public class BeanRowMapperBenchmark {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private static final int ROWS = 20000;
+    private static final int WARMUP = 5;
+    private static final int ROUNDS = 10;
+
+    private static final String[] USER_COLUMNS = { "id", "user_name", "pass_word" };
+    private static final int[] USER_TYPES = { Types.BIGINT, Types.VARCHAR, Types.VARCHAR };
+
+    private static final String[] WIDE_COLUMNS = { "id", "name", "email", "phone", "age", "score",
+            "balance", "enabled", "created", "parentId", "remark", "unmapped" };
+    private static final int[] WIDE_TYPES = { Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            Types.INTEGER, Types.DOUBLE, Types.BIGINT, Types.BIT, Types.TIMESTAMP, Types.BIGINT,
+            Types.VARCHAR, Types.VARCHAR };
+
+    @Test
+    public void userList() throws SQLException {
+        Object[][] data = new Object[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            data[i] = new Object[] { (long) i, "user" + i, "pwd" + i };
+        }
+        List<User> expected = run("User", USER_COLUMNS, USER_TYPES, data, User.class);
+        assertEquals(ROWS, expected.size());
+    }
+
+    @Test
+    public void wideList() throws SQLException {
+        Object[][] data = new Object[ROWS][];
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < ROWS; i++) {
+            data[i] = new Object[] { (long) i, "name" + i, "mail" + i + "@example.com", "1380000" + i,
+                    i % 100, i * 0.5d, i * 100L, i % 2 == 0, now, i % 3 == 0 ? null : (long) i / 2,
+                    "remark " + i, "x" };
+        }
+        List<WideBean> mapped = run("WideBean", WIDE_COLUMNS, WIDE_TYPES, data, WideBean.class);
+        assertEquals(ROWS, mapped.size());
+    }
+
+    private <T> List<T> run(String name, String[] columns, int[] types, Object[][] data, Class<T> type)
+            throws SQLException {
+        ResultSetHandler<List<T>> reflective = new BeanListHandler<T>(type);
+        ResultSetHandler<List<T>> mapper = BeanRowMapper.listHandler(type);
+
+        for (int i = 0; i < WARMUP; i++) {
+            reflective.handle(ArrayResultSet.of(columns, types, data));
+            mapper.handle(ArrayResultSet.of(columns, types, data));
+        }
+        long reflectiveNanos = 0;
+        long mapperNanos = 0;
+        List<T> fromReflective = null;
+        List<T> fromMapper = null;
+        for (int i = 0; i < ROUNDS; i++) {
+            ResultSet rs = ArrayResultSet.of(columns, types, data);
+            long start = System.nanoTime();
+            fromReflective = reflective.handle(rs);
+            reflectiveNanos += System.nanoTime() - start;
+
+            rs = ArrayResultSet.of(columns, types, data);
+            start = System.nanoTime();
+            fromMapper = mapper.handle(rs);
+            mapperNanos += System.nanoTime() - start;
+        }
+        assertEquals(fromReflective.size(), fromMapper.size());
+        assertEquals(fromReflective.get(ROWS - 1).toString(), fromMapper.get(ROWS - 1).toString());
+
+        logger.info("{}: {} rows x {} rounds, BeanListHandler {} ms, BeanRowMapper {} ms, speedup {}x",
+                name, ROWS, ROUNDS, reflectiveNanos / 1000000, mapperNanos / 1000000,
+                String.format("%.1f", (double) reflectiveNanos / mapperNanos));
+        return fromMapper;
+    }
+
+    public static class WideBean {
+
+        private long id;
+        private String name;
+        private String email;
+        private String phone;
+        private int age;
+        private double score;
+        private long balance;
+        private boolean enabled;
+        private Timestamp created;
+        private Long parentId;
+        private String remark;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+
+        public String getPhone() {
+            return phone;
+        }
+
+        public void setPhone(String phone) {
+            this.phone = phone;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public void setScore(double score) {
+            this.score = score;
+        }
+
+        public long getBalance() {
+            return balance;
+        }
+
+        public void setBalance(long balance) {
+            this.balance = balance;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Timestamp getCreated() {
+            return created;
+        }
+
+        public void setCreated(Timestamp created) {
+            this.created = created;
+        }
+
+        public Long getParentId() {
+            return parentId;
+        }
+
+        public void setParentId(Long parentId) {
+            this.parentId = parentId;
+        }
+
+        public String getRemark() {
+            return remark;
+        }
+
+        public void setRemark(String remark) {
+            this.remark = remark;
+        }
+
+        @Override
+        public String toString() {
+            return "[id : " + id + ", name : " + name + ", age : " + age + ", parentId : " + parentId + "]";
+        }
+    }
+}
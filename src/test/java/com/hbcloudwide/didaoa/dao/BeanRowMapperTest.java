@@ -0,0 +1,172 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+import org.apache.commons.dbutils.handlers.BeanListHandler;
+import org.junit.Test;
+
+import com.hbcloudwide.didaoa.domain.User;
+
+public class BeanRowMapperTest {
+
+    private static final String[] COLUMNS = { "ID", "name", "age", "score", "enabled", "created", "parentId", "unmapped" };
+    private static final int[] TYPES = { Types.BIGINT, Types.VARCHAR, Types.INTEGER, Types.DOUBLE, Types.BIT,
+            Types.TIMESTAMP, Types.BIGINT, Types.VARCHAR };
+
+    @Test
+    public void mapsColumnsIgnoringCase() throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Object[][] data = {
+                { 1L, "tom", 20, 1.5d, true, now, 7L, "x" },
+                { 2L, "amy", 30, 2.5d, false, now, null, "y" } };
+        List<Row> rows = BeanRowMapper.listHandler(Row.class).handle(ArrayResultSet.of(COLUMNS, TYPES, data));
+        assertEquals(2, rows.size());
+        Row first = rows.get(0);
+        assertEquals(1L, first.getId());
+        assertEquals("tom", first.getName());
+        assertEquals(20, first.getAge());
+        assertEquals(1.5d, first.getScore(), 0d);
+        assertTrue(first.isEnabled());
+        assertEquals(now, first.getCreated());
+        assertEquals(Long.valueOf(7L), first.getParentId());
+        assertNull(rows.get(1).getParentId());
+    }
+
+    @Test
+    public void nullLeavesPrimitiveDefault() throws SQLException {
+        Object[][] data = { { 3L, null, null, null, null, null, null, null } };
+        Row row = BeanRowMapper.handler(Row.class).handle(ArrayResultSet.of(COLUMNS, TYPES, data));
+        assertEquals(3L, row.getId());
+        assertNull(row.getName());
+        assertEquals(0, row.getAge());
+        assertNull(row.getCreated());
+        assertNull(row.getParentId());
+    }
+
+    @Test
+    public void emptyResultSet() throws SQLException {
+        Object[][] data = {};
+        assertTrue(BeanRowMapper.listHandler(Row.class).handle(ArrayResultSet.of(COLUMNS, TYPES, data)).isEmpty());
+        assertNull(BeanRowMapper.handler(Row.class).handle(ArrayResultSet.of(COLUMNS, TYPES, data)));
+    }
+
+    @Test
+    public void sameAsBeanListHandler() throws SQLException {
+        String[] columns = { "id", "user_name", "pass_word" };
+        int[] types = { Types.BIGINT, Types.VARCHAR, Types.VARCHAR };
+        Object[][] data = { { 1L, "tom", "123" }, { 2L, "amy", null } };
+        List<User> expected = new BeanListHandler<User>(User.class).handle(ArrayResultSet.of(columns, types, data));
+        List<User> mapped = BeanRowMapper.listHandler(User.class).handle(ArrayResultSet.of(columns, types, data));
+        assertEquals(expected.toString(), mapped.toString());
+    }
+
+    @Test
+    public void mapsCharFromString() throws SQLException {
+        String[] columns = { "id", "code", "grade" };
+        int[] types = { Types.BIGINT, Types.CHAR, Types.CHAR };
+        Object[][] data = { { 1L, "A", "Bx" }, { 2L, null, "" } };
+        List<Row> rows = BeanRowMapper.listHandler(Row.class).handle(ArrayResultSet.of(columns, types, data));
+        assertEquals('A', rows.get(0).getCode());
+        assertEquals(Character.valueOf('B'), rows.get(0).getGrade());
+        assertEquals('\0', rows.get(1).getCode());
+        assertNull(rows.get(1).getGrade());
+    }
+
+    @Test(expected = SQLException.class)
+    public void incompatibleTypeFails() throws SQLException {
+        Object[][] data = { { 1L, "tom", 20, 1.5d, true, "not a timestamp", 7L, "x" } };
+        BeanRowMapper.handler(Row.class).handle(ArrayResultSet.of(COLUMNS, TYPES, data));
+    }
+
+    public static class Row {
+
+        private long id;
+        private String name;
+        private int age;
+        private double score;
+        private boolean enabled;
+        private Timestamp created;
+        private Long parentId;
+        private char code;
+        private Character grade;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public void setScore(double score) {
+            this.score = score;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Timestamp getCreated() {
+            return created;
+        }
+
+        public void setCreated(Timestamp created) {
+            this.created = created;
+        }
+
+        public Long getParentId() {
+            return parentId;
+        }
+
+        public void setParentId(Long parentId) {
+            this.parentId = parentId;
+        }
+
+        public char getCode() {
+            return code;
+        }
+
+        public void setCode(char code) {
+            this.code = code;
+        }
+
+        public Character getGrade() {
+            return grade;
+        }
+
+        public void setGrade(Character grade) {
+            this.grade = grade;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class CompactRowSetTest {
+
+    private static final String[] COLUMNS = { "ID", "user_name", "Score", "id" };
+    private static final int[] TYPES = { Types.BIGINT, Types.VARCHAR, Types.DOUBLE, Types.BIGINT };
+
+    @Test
+    public void columnsAreLookedUpByLabelIgnoringCase() throws SQLException {
+        Object[][] data = { { 1L, "tom", 1.5d, 10L }, { 2L, "amy", 2.5d, 20L } };
+        CompactRowSet rowSet = CompactRowSet.HANDLER.handle(ArrayResultSet.of(COLUMNS, TYPES, data));
+        assertEquals(2, rowSet.size());
+        assertEquals(4, rowSet.getColumnCount());
+        assertArrayEquals(COLUMNS, rowSet.getColumnNames());
+        // 重名列取第一个
+        assertEquals(0, rowSet.getColumnIndex("id"));
+        assertEquals(1, rowSet.getColumnIndex("USER_NAME"));
+        assertEquals(-1, rowSet.getColumnIndex("missing"));
+        assertEquals("amy", rowSet.get(1, "User_Name"));
+        assertEquals(2.5d, rowSet.get(1, "score"));
+        assertEquals(20L, rowSet.get(1, 3));
+        assertNull(rowSet.get(0, "missing"));
+    }
+
+    @Test
+    public void nullsAreKept() throws SQLException {
+        Object[][] data = { { 1L, null, null, null } };
+        CompactRowSet rowSet = CompactRowSet.HANDLER.handle(ArrayResultSet.of(COLUMNS, TYPES, data));
+        assertEquals(1, rowSet.size());
+        assertNull(rowSet.get(0, "user_name"));
+        Map<String, Object> row = rowSet.asMap(0);
+        assertTrue(row.containsKey("USER_NAME"));
+        assertNull(row.get("user_name"));
+        assertFalse(row.containsKey("missing"));
+    }
+
+    @Test
+    public void mapViewMatchesRows() throws SQLException {
+        Object[][] data = { { 1L, "tom", 1.5d, 10L } };
+        CompactRowSet rowSet = CompactRowSet.HANDLER.handle(ArrayResultSet.of(COLUMNS, TYPES, data));
+        Map<String, Object> row = rowSet.asMapList().get(0);
+        assertEquals(4, row.size());
+        assertEquals("tom", row.get("USER_NAME"));
+        assertEquals(1L, row.get("Id"));
+        assertEquals(1, rowSet.asMapList().size());
+    }
+
+    @Test
+    public void emptyResultSet() throws SQLException {
+        Object[][] data = {};
+        CompactRowSet rowSet = CompactRowSet.HANDLER.handle(ArrayResultSet.of(COLUMNS, TYPES, data));
+        assertTrue(rowSet.isEmpty());
+        assertEquals(4, rowSet.getColumnCount());
+        assertFalse(rowSet.iterator().hasNext());
+        assertTrue(rowSet.asMapList().isEmpty());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rowOutOfRange() throws SQLException {
+        Object[][] data = { { 1L, "tom", 1.5d, 10L } };
+        CompactRowSet.HANDLER.handle(ArrayResultSet.of(COLUMNS, TYPES, data)).getRow(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rowWidthMustMatchColumns() {
+        new CompactRowSet(COLUMNS).add(new Object[] { 1L });
+    }
+}
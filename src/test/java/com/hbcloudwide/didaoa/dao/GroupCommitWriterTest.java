@@ -0,0 +1,157 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionCallback;
+
+public class GroupCommitWriterTest {
+
+    private static final String INSERT_SQL = "INSERT INTO user (user_name, pass_word) VALUES (?, ?)";
+    private static final String UPDATE_SQL = "UPDATE user SET pass_word = ? WHERE user_name = ?";
+
+    @Test
+    public void fullBatchIsWrittenAtOnce() throws Exception {
+        RecordingTemplate template = new RecordingTemplate();
+        GroupCommitWriter writer = new GroupCommitWriter(template, INSERT_SQL, 60000, 3);
+        CompletableFuture<Integer> a = writer.write("a", "1");
+        CompletableFuture<Integer> b = writer.write("b", "2");
+        CompletableFuture<Integer> c = writer.write("c", "3");
+        assertEquals(Integer.valueOf(1), c.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(1), a.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(1), b.get(5, TimeUnit.SECONDS));
+        assertEquals(1, template.batches.size());
+        assertEquals(3, template.batches.get(0).size());
+        assertEquals(1, writer.getBatchCount());
+        assertEquals(3, writer.getRowCount());
+    }
+
+    @Test
+    public void windowExpiryWritesPartialBatch() throws Exception {
+        RecordingTemplate template = new RecordingTemplate();
+        GroupCommitWriter writer = new GroupCommitWriter(template, UPDATE_SQL, 10, 100);
+        CompletableFuture<Integer> a = writer.write("1", "a");
+        CompletableFuture<Integer> b = writer.write("2", "b");
+        assertEquals(Integer.valueOf(1), a.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(1), b.get(5, TimeUnit.SECONDS));
+        assertEquals(1, template.batches.size());
+        assertEquals(2, template.batches.get(0).size());
+    }
+
+    @Test
+    public void failedBatchFailsOnlyTheBadRow() throws Exception {
+        RecordingTemplate template = new RecordingTemplate();
+        template.badValue = "bad";
+        GroupCommitWriter writer = new GroupCommitWriter(template, UPDATE_SQL, 60000, 2);
+        CompletableFuture<Integer> good = writer.write("1", "a");
+        CompletableFuture<Integer> bad = writer.write("bad", "b");
+        assertEquals(Integer.valueOf(1), good.get(5, TimeUnit.SECONDS));
+        try {
+            bad.get(5, TimeUnit.SECONDS);
+            fail("Expected the bad row to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(2, writer.getRetryCount());
+        assertEquals(0, writer.getBatchCount());
+    }
+
+    @Test
+    public void singleRowFailureReachesCaller() throws Exception {
+        RecordingTemplate template = new RecordingTemplate();
+        template.badValue = "bad";
+        GroupCommitWriter writer = new GroupCommitWriter(template, UPDATE_SQL, 60000, 100);
+        CompletableFuture<Integer> bad = writer.write("bad", "a");
+        writer.flush();
+        try {
+            bad.get(5, TimeUnit.SECONDS);
+            fail("Expected the row to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(0, writer.getRetryCount());
+    }
+
+    @Test
+    public void templateDestroyWritesPendingRowsThenRejects() throws Exception {
+        RecordingTemplate template = new RecordingTemplate();
+        GroupCommitWriter writer = new GroupCommitWriter(template, UPDATE_SQL, 50, 100);
+        CompletableFuture<Integer> pending = writer.write("1", "a");
+        template.destroy();
+        assertEquals(Integer.valueOf(1), pending.get(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> late = writer.write("2", "b");
+        try {
+            late.get(5, TimeUnit.SECONDS);
+            fail("Expected the write to be rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    /**
+     * 不访问数据库，记录每次批量写入的参数，含 badValue 的行写入失败
+     */
+    private static class RecordingTemplate extends DbUtilsTemplate {
+
+        final List<List<Object[]>> batches = Collections.synchronizedList(new ArrayList<List<Object[]>>());
+        volatile String badValue;
+
+        RecordingTemplate() {
+            super(null);
+        }
+
+        @Override
+        public <T> T inTransaction(TransactionCallback<T> action) {
+            return action.doInTransaction(null);
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, Object[][] params) {
+            record(Arrays.asList(params));
+            int[] counts = new int[params.length];
+            Arrays.fill(counts, 1);
+            return counts;
+        }
+
+        @Override
+        public long batchUpdate(String sql, Iterator<Object[]> params, int chunkSize, boolean commitPerChunk) {
+            List<Object[]> rows = new ArrayList<Object[]>();
+            while (params.hasNext()) {
+                rows.add(params.next());
+            }
+            record(rows);
+            return rows.size();
+        }
+
+        @Override
+        public int update(String sql, Object[] params) {
+            check(params);
+            return 1;
+        }
+
+        private void record(List<Object[]> rows) {
+            for (Object[] row : rows) {
+                check(row);
+            }
+            batches.add(rows);
+        }
+
+        private void check(Object[] row) {
+            if (Arrays.asList(row).contains(badValue)) {
+                throw new IllegalStateException("bad row");
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesHaveExactBuckets() {
+        for (long v = 0; v < 16; v++) {
+            assertEquals(v, LatencyHistogram.bucketOf(v));
+            assertEquals(v, LatencyHistogram.upperBoundOf((int) v));
+        }
+        assertEquals(16, LatencyHistogram.bucketOf(16));
+        assertEquals(16, LatencyHistogram.upperBoundOf(16));
+    }
+
+    @Test
+    public void bucketsCoverValueWithinRelativeError() {
+        int previous = -1;
+        for (long v = 0; v < (1L << 42); v = v < 100000 ? v + 1 : v + v / 7) {
+            int bucket = LatencyHistogram.bucketOf(v);
+            assertTrue("buckets must not decrease at " + v, bucket >= previous);
+            previous = bucket;
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            if (v < (1L << 40)) {
+                long lower = bucket == 0 ? 0 : LatencyHistogram.upperBoundOf(bucket - 1) + 1;
+                assertTrue(v + " in [" + lower + ", " + upper + "]", lower <= v && v <= upper);
+                assertTrue("error too large at " + v, upper - v <= v / 16);
+            }
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99));
+        for (long v = 1; v <= 1000; v++) {
+            histogram.record(v);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500, histogram.getSum());
+        assertEquals(500.5d, histogram.getMean(), 0d);
+        assertEquals(1000, histogram.getMax());
+        assertEquals(1, histogram.getPercentile(0));
+        assertEquals(1000, histogram.getPercentile(100));
+        long p50 = histogram.getPercentile(50);
+        assertTrue("p50 " + p50, p50 >= 500 && p50 <= 500 + 500 / 16);
+        long p99 = histogram.getPercentile(99);
+        assertTrue("p99 " + p99, p99 >= 990 && p99 <= 1000);
+    }
+
+    @Test
+    public void outOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+}
@@ -0,0 +1,80 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.druid.pool.DruidDataSource;
+
+/**
+ * LOAD DATA LOCAL INFILE 与分块多行INSERT（batchUpdate）的导入耗时对比
+ * 需要本地MySQL，服务端开启 local_infile；通过 -Dbenchmark.url、-Dbenchmark.username、-Dbenchmark.password 指定连接
+ */
+@Ignore("需要MySQL，手动运行")
+public class LoadDataBenchmark {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private static final int ROWS = 200000;
+    private static final String TABLE = "load_data_benchmark";
+    private static final String[] COLUMNS = { "id", "user_name", "pass_word" };
+
+    @Test
+    public void loadDataVersusBatchInsert() throws SQLException {
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setUrl(System.getProperty("benchmark.url",
+                "jdbc:mysql://127.0.0.1:3306/didaoa?useUnicode=true&characterEncoding=utf8&allowLoadLocalInfile=true"));
+        dataSource.setUsername(System.getProperty("benchmark.username", "root"));
+        dataSource.setPassword(System.getProperty("benchmark.password", ""));
+        dataSource.setMaxActive(2);
+        DbUtilsTemplate template = new DbUtilsTemplate(dataSource);
+        // 两次计数之间表被清空，不能复用缓存的总数
+        template.setCountCacheMillis(0);
+        try {
+            template.update("DROP TABLE IF EXISTS " + TABLE);
+            template.update("CREATE TABLE " + TABLE + " (id BIGINT PRIMARY KEY, user_name VARCHAR(64), pass_word VARCHAR(64))");
+
+            long start = System.nanoTime();
+            long inserted = template.batchUpdate("INSERT INTO " + TABLE + " (id, user_name, pass_word) VALUES (?, ?, ?)", rows());
+            long batchNanos = System.nanoTime() - start;
+            assertEquals(ROWS, inserted);
+            assertEquals(ROWS, template.findCount("SELECT * FROM " + TABLE, null));
+
+            template.update("TRUNCATE TABLE " + TABLE);
+            start = System.nanoTime();
+            long loaded = template.loadData(TABLE, COLUMNS, rows());
+            long loadNanos = System.nanoTime() - start;
+            assertEquals(ROWS, loaded);
+            assertEquals(ROWS, template.findCount("SELECT * FROM " + TABLE, null));
+
+            logger.info("{} rows: batchUpdate {} ms, loadData {} ms, speedup {}x", ROWS, batchNanos / 1000000,
+                    loadNanos / 1000000, String.format("%.1f", (double) batchNanos / loadNanos));
+        } finally {
+            template.update("DROP TABLE IF EXISTS " + TABLE);
+            dataSource.close();
+        }
+    }
+
+    private static Iterator<Object[]> rows() {
+        return new Iterator<Object[]>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return i < ROWS;
+            }
+
+            @Override
+            public Object[] next() {
+                i++;
+                return new Object[] { (long) i, "user" + i, "pwd" + i };
+            }
+        };
+    }
+}
@@ -0,0 +1,37 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class LoadDataInputStreamTest {
+
+    @Test
+    public void encodesRowsInDefaultFormat() throws IOException {
+        LoadDataInputStream in = new LoadDataInputStream(Arrays.asList(
+                new Object[] { 1L, "tom", null },
+                new Object[] { 2, "a\tb\nc\\d", true }).iterator());
+        assertEquals("1\ttom\t\\N\n2\ta\\tb\\nc\\\\d\t1\n", readAll(in));
+        assertEquals(2, in.getRowCount());
+    }
+
+    @Test
+    public void emptyIteratorIsEmptyStream() throws IOException {
+        assertEquals("", readAll(new LoadDataInputStream(Arrays.<Object[]>asList().iterator())));
+    }
+
+    private static String readAll(LoadDataInputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[3];
+        int n;
+        while ((n = in.read(buf, 0, buf.length)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,74 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class LocalQueryCacheTest {
+
+    private static final Set<String> USER = Collections.singleton("user");
+
+    private static QueryKey key(int id) {
+        return new QueryKey("first", null, "SELECT * FROM user WHERE id = ?", new Object[] { id });
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        LocalQueryCache cache = new LocalQueryCache(2, 1 << 20);
+        cache.put(key(1), USER, "a", cache.version(USER));
+        cache.put(key(2), USER, "b", cache.version(USER));
+        cache.get(key(1), USER);
+        cache.put(key(3), USER, "c", cache.version(USER));
+        assertEquals("a", cache.get(key(1), USER));
+        assertNull(cache.get(key(2), USER));
+        assertEquals("c", cache.get(key(3), USER));
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+
+    @Test
+    public void writeInvalidatesOnlyDependentEntries() {
+        LocalQueryCache cache = new LocalQueryCache(100, 1 << 20);
+        Set<String> dept = Collections.singleton("dept");
+        QueryKey deptKey = new QueryKey("list", null, "SELECT * FROM dept", null);
+        List<String> depts = Arrays.asList("x");
+        cache.put(key(1), new HashSet<String>(Arrays.asList("user", "dept")), "a", cache.version(USER) + cache.version(dept));
+        cache.put(deptKey, dept, depts, cache.version(dept));
+        cache.put(key(2), USER, "b", cache.version(USER));
+        cache.invalidate(USER);
+        assertNull(cache.get(key(1), USER));
+        assertNull(cache.get(key(2), USER));
+        assertSame(depts, cache.get(deptKey, USER));
+    }
+
+    @Test
+    public void staleResultIsNotStored() {
+        LocalQueryCache cache = new LocalQueryCache(100, 1 << 20);
+        long version = cache.version(USER);
+        // 查询期间表被修改
+        cache.invalidate(USER);
+        cache.put(key(1), USER, "old", version);
+        assertNull(cache.get(key(1), USER));
+        cache.invalidate(Collections.<String>emptySet());
+        assertEquals(0, cache.stats().get("entries"));
+    }
+
+    @Test
+    public void boundsEstimatedSize() {
+        LocalQueryCache cache = new LocalQueryCache(1000, 4096);
+        char[] big = new char[300];
+        for (int i = 0; i < 20; i++) {
+            cache.put(key(i), USER, new String(big), cache.version(USER));
+        }
+        assertTrue((Long) cache.stats().get("bytes") <= 4096);
+        assertTrue((Long) cache.stats().get("evictions") > 0);
+    }
+}
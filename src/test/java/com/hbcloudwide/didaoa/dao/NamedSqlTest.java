@@ -0,0 +1,48 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.hbcloudwide.didaoa.domain.User;
+
+public class NamedSqlTest {
+
+    @Test
+    public void bindsFromMap() {
+        NamedSql named = NamedSql.parse("SELECT * FROM user WHERE id IN (:ids) AND user_name = :name");
+        assertEquals("SELECT * FROM user WHERE id IN (?) AND user_name = ?", named.getSql());
+        Map<String, Object> params = new HashMap<String, Object>();
+        List<Long> ids = Arrays.asList(1L, 2L);
+        params.put("ids", ids);
+        params.put("name", null);
+        assertArrayEquals(new Object[] { ids, null }, named.bind(params));
+    }
+
+    @Test
+    public void bindsFromBean() {
+        User user = new User();
+        user.setId(7);
+        user.setPass_word("secret");
+        NamedSql named = NamedSql.parse("UPDATE user SET pass_word = :pass_word WHERE id = :id");
+        assertArrayEquals(new Object[] { "secret", 7L }, named.bind(user));
+        assertArrayEquals(new Object[] { "secret", 7L }, named.bind(user));
+    }
+
+    @Test
+    public void noNamesBindsNull() {
+        assertNull(NamedSql.parse("SELECT * FROM user").bind(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingParameterFails() {
+        NamedSql.parse("SELECT * FROM user WHERE id = :id").bind(new HashMap<String, Object>());
+    }
+}
@@ -0,0 +1,53 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.hbcloudwide.didaoa.domain.User;
+
+public class QueryKeyTest {
+
+    private static final String SQL = "SELECT * FROM user WHERE user_name IN (?)";
+
+    @Test
+    public void equalQueriesEncodeTheSame() {
+        assertArrayEquals(key(new Object[] { 1L, Arrays.asList("a", "b") }).encode(),
+                key(new Object[] { 1L, Arrays.asList("a", "b") }).encode());
+    }
+
+    @Test
+    public void nullDiffersFromNullString() {
+        assertDistinct(key(new Object[] { null }), key(new Object[] { "null" }));
+    }
+
+    @Test
+    public void commaInStringDiffersFromTwoElements() {
+        assertDistinct(key(new Object[] { Arrays.asList("a, b") }), key(new Object[] { Arrays.asList("a", "b") }));
+        assertDistinct(key(new Object[] { "a, b" }), key(new Object[] { "a", "b" }));
+    }
+
+    @Test
+    public void datesDifferingInMillisDiffer() {
+        assertDistinct(key(new Object[] { new Date(1500000000001L) }), key(new Object[] { new Date(1500000000002L) }));
+    }
+
+    @Test
+    public void typeAndKindAreEncoded() {
+        assertDistinct(new QueryKey("list", User.class, SQL, null), new QueryKey("list", null, SQL, null));
+        assertDistinct(new QueryKey("list", null, SQL, null), new QueryKey("first", null, SQL, null));
+        assertDistinct(key(new Object[] { 1 }), key(new Object[] { 1L }));
+    }
+
+    private static QueryKey key(Object[] params) {
+        return new QueryKey("list", User.class, SQL, params);
+    }
+
+    private static void assertDistinct(QueryKey a, QueryKey b) {
+        assertFalse(Arrays.equals(a.encode(), b.encode()));
+    }
+}
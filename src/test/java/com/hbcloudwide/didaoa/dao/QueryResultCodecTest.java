@@ -0,0 +1,57 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.hbcloudwide.didaoa.domain.User;
+
+public class QueryResultCodecTest {
+
+    @Test
+    public void mapRowsKeepValuesAndIgnoreCase() {
+        Map<String, Object> row = new LinkedHashMap<String, Object>();
+        row.put("id", 1L);
+        row.put("user_name", "张三");
+        row.put("salary", new BigDecimal("12.50"));
+        Timestamp created = new Timestamp(1500000000123L);
+        created.setNanos(123456789);
+        row.put("created", created);
+        row.put("note", null);
+        List<Map<String, Object>> rows = Arrays.asList(row, row);
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> decoded = (List<Map<String, Object>>) QueryResultCodec.decode(
+                QueryResultCodec.encode(rows), 0, null);
+        assertEquals(2, decoded.size());
+        assertEquals(row, decoded.get(1));
+        assertEquals("张三", decoded.get(0).get("USER_NAME"));
+        assertEquals(created, decoded.get(0).get("created"));
+    }
+
+    @Test
+    public void beans() {
+        User user = new User();
+        user.setId(-42);
+        user.setUser_name("kitty");
+
+        @SuppressWarnings("unchecked")
+        List<User> decoded = (List<User>) QueryResultCodec.decode(QueryResultCodec.encode(Arrays.asList(user)), 0, User.class);
+        assertEquals(-42, decoded.get(0).getId());
+        assertEquals("kitty", decoded.get(0).getUser_name());
+        assertNull(decoded.get(0).getPass_word());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void beansDecodeOnlyAsExpectedType() {
+        QueryResultCodec.decode(QueryResultCodec.encode(new User()), 0, String.class);
+    }
+}
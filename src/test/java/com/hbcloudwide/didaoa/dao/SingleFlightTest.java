@@ -0,0 +1,86 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+    private static final String SQL = "SELECT * FROM user WHERE id > ?";
+
+    @Test
+    public void concurrentCallsShareOneExecution() throws Exception {
+        final SingleFlight flight = new SingleFlight();
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final Object result = new Object();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(pool.submit(() -> flight.execute(new QueryKey("list", null, SQL, new Object[] { 10 }), () -> {
+                    executions.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new SQLException(e);
+                    }
+                    return result;
+                })));
+            }
+            // 等所有调用都挂到同一次执行上
+            long deadline = System.currentTimeMillis() + 5000;
+            while (flight.getSharedCount() < 7 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<Object> future : futures) {
+                assertSame(result, future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, executions.get());
+        assertEquals(7, flight.getSharedCount());
+        assertEquals(0, flight.getInFlightCount());
+    }
+
+    @Test
+    public void differentParamsOrKindsAreNotShared() throws Exception {
+        SingleFlight flight = new SingleFlight();
+        final AtomicInteger executions = new AtomicInteger();
+        SingleFlight.Loader<Object> loader = () -> executions.incrementAndGet();
+        flight.execute(new QueryKey("list", null, SQL, new Object[] { 10 }), loader);
+        flight.execute(new QueryKey("list", null, SQL, new Object[] { 11 }), loader);
+        flight.execute(new QueryKey("first", null, SQL, new Object[] { 10 }), loader);
+        flight.execute(new QueryKey("list", null, SQL, new Object[] { 10 }), loader);
+        assertEquals(4, executions.get());
+        assertEquals(0, flight.getSharedCount());
+    }
+
+    @Test
+    public void failureIsNotRemembered() throws Exception {
+        SingleFlight flight = new SingleFlight();
+        try {
+            flight.execute(new QueryKey("list", null, SQL, null), () -> {
+                throw new SQLException("boom");
+            });
+            fail();
+        } catch (SQLException expected) {
+            assertEquals("boom", expected.getMessage());
+        }
+        assertEquals("ok", flight.execute(new QueryKey("list", null, SQL, null), () -> "ok"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SqlMetricsTest {
+
+    @Test
+    public void poolWaitIsRecordedApartFromExecution() {
+        SqlMetrics metrics = new SqlMetrics();
+        metrics.record("SELECT * FROM user WHERE id = 1", TimeUnit.MILLISECONDS.toNanos(2), TimeUnit.MILLISECONDS.toNanos(5), 1, false);
+        metrics.record("SELECT * FROM user WHERE id = 2", 0, TimeUnit.MILLISECONDS.toNanos(3), 0, true);
+        List<Map<String, Object>> snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.size());
+        Map<String, Object> stats = snapshot.get(0);
+        assertEquals("SELECT * FROM user WHERE id = ?", stats.get("sql"));
+        assertEquals(2L, stats.get("count"));
+        assertEquals(1L, stats.get("errors"));
+        assertEquals(1L, stats.get("rows"));
+        assertEquals(8000L, stats.get("execTotalMicros"));
+        assertEquals(5000L, ((Map<?, ?>) stats.get("exec")).get("max"));
+        assertEquals(2000L, ((Map<?, ?>) stats.get("poolWait")).get("max"));
+        assertEquals(0L, ((Map<?, ?>) stats.get("poolWait")).get("p50"));
+    }
+
+    @Test
+    public void snapshotIsOrderedByExecutionTime() {
+        SqlMetrics metrics = new SqlMetrics();
+        metrics.record("SELECT 1", 0, 1000, 1, false);
+        metrics.record("UPDATE user SET user_name = ?", 0, 9000, 1, false);
+        List<Map<String, Object>> snapshot = metrics.snapshot();
+        assertEquals("UPDATE user SET user_name = ?", snapshot.get(0).get("sql"));
+        assertEquals("SELECT ?", snapshot.get(1).get("sql"));
+    }
+
+    @Test
+    public void recordAfterResetIsVisible() {
+        SqlMetrics metrics = new SqlMetrics();
+        metrics.record("SELECT 1", 0, 1000, 1, false);
+        metrics.reset();
+        assertTrue(metrics.snapshot().isEmpty());
+        metrics.record("SELECT 1", 0, 1000, 1, false);
+        assertEquals(1L, metrics.snapshot().get(0).get("count"));
+    }
+}
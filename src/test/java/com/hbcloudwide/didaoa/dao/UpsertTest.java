@@ -0,0 +1,40 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.hbcloudwide.didaoa.utils.SqlUtil;
+
+public class UpsertTest {
+
+    @Test
+    public void updatesNonKeyColumnsByDefault() {
+        Upsert upsert = Upsert.into("user").columns("id", "user_name", "pass_word").keys("id");
+        assertEquals("INSERT INTO user (id, user_name, pass_word) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE "
+                + "user_name = VALUES(user_name), pass_word = VALUES(pass_word)", upsert.toSql());
+    }
+
+    @Test
+    public void updatesOnlyChosenColumns() {
+        Upsert upsert = Upsert.into("user").columns("id", "user_name", "pass_word").keys("id").update("pass_word");
+        assertEquals("INSERT INTO user (id, user_name, pass_word) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE "
+                + "pass_word = VALUES(pass_word)", upsert.toSql());
+    }
+
+    @Test
+    public void emptyUpdateKeysExistingRows() {
+        Upsert upsert = Upsert.into("user").columns("id", "user_name").keys("id").update();
+        assertEquals("INSERT INTO user (id, user_name) VALUES (?, ?) ON DUPLICATE KEY UPDATE id = id", upsert.toSql());
+    }
+
+    @Test
+    public void rewritesIntoMultiRowInsert() {
+        String[] parts = SqlUtil.splitInsertValues(Upsert.into("user").columns("id", "user_name").keys("id").toSql());
+        assertArrayEquals(new String[] { "INSERT INTO user (id, user_name) VALUES ", "(?, ?)",
+                " ON DUPLICATE KEY UPDATE user_name = VALUES(user_name)" }, parts);
+        assertEquals("INSERT INTO user (id, user_name) VALUES (?, ?),(?, ?) ON DUPLICATE KEY UPDATE user_name = VALUES(user_name)",
+                SqlUtil.multiRowInsert(parts, 2));
+    }
+}
@@ -0,0 +1,105 @@
+package com.hbcloudwide.didaoa.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionCallback;
+
+public class WriteBehindBufferTest {
+
+    private static final String SUM_SQL = "UPDATE user SET login_count = login_count + ? WHERE id = ?";
+
+    @Test
+    public void latestValueWins() {
+        RecordingTemplate template = new RecordingTemplate();
+        WriteBehindBuffer<Long> buffer = new WriteBehindBuffer<Long>(template,
+                "UPDATE user SET pass_word = ? WHERE id = ?", WriteBehindBuffer.Mode.LATEST, 60000, 100);
+        buffer.write(2L, "a");
+        buffer.write(1L, "b");
+        buffer.write(2L, "c");
+        assertEquals(2, buffer.size());
+        assertTrue(buffer.close());
+        assertEquals(1, template.batches.size());
+        Object[][] rows = template.batches.get(0);
+        assertArrayEquals(new Object[] { "b", 1L }, rows[0]);
+        assertArrayEquals(new Object[] { "c", 2L }, rows[1]);
+    }
+
+    @Test
+    public void deltasAreSummedAndKeptOnFailure() {
+        RecordingTemplate template = new RecordingTemplate();
+        WriteBehindBuffer<Long> buffer = new WriteBehindBuffer<Long>(template, SUM_SQL, WriteBehindBuffer.Mode.SUM, 60000, 100);
+        buffer.write(1L, 1);
+        buffer.write(1L, 2);
+        template.fail = true;
+        assertFalse(buffer.flush());
+        buffer.write(1L, 4);
+        template.fail = false;
+        assertTrue(buffer.close());
+        assertArrayEquals(new Object[] { 7L, 1L }, template.batches.get(0)[0]);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void mixedKeyTypesAreWrittenInArrivalOrder() {
+        RecordingTemplate template = new RecordingTemplate();
+        WriteBehindBuffer<Object> buffer = new WriteBehindBuffer<Object>(template, SUM_SQL, WriteBehindBuffer.Mode.SUM, 60000, 100);
+        buffer.write(2L, 1);
+        buffer.write("a", 1);
+        assertTrue(buffer.close());
+        Object[][] rows = template.batches.get(0);
+        assertArrayEquals(new Object[] { 1, 2L }, rows[0]);
+        assertArrayEquals(new Object[] { 1, "a" }, rows[1]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsWritesAfterClose() {
+        WriteBehindBuffer<Long> buffer = new WriteBehindBuffer<Long>(new RecordingTemplate(), SUM_SQL,
+                WriteBehindBuffer.Mode.SUM, 60000, 100);
+        buffer.close();
+        buffer.write(1L, 1);
+    }
+
+    @Test
+    public void templateDestroyFlushesBuffers() {
+        RecordingTemplate template = new RecordingTemplate();
+        WriteBehindBuffer<Long> buffer = template.writeBehindBuffer(SUM_SQL, WriteBehindBuffer.Mode.SUM);
+        buffer.write(1L, 3);
+        template.destroy();
+        assertEquals(1, template.batches.size());
+        assertArrayEquals(new Object[] { 3, 1L }, template.batches.get(0)[0]);
+    }
+
+    /**
+     * 不访问数据库，只记录每次批量写入的参数
+     */
+    private static class RecordingTemplate extends DbUtilsTemplate {
+
+        final List<Object[][]> batches = new ArrayList<Object[][]>();
+        volatile boolean fail;
+
+        RecordingTemplate() {
+            super(null);
+        }
+
+        @Override
+        public <T> T inTransaction(TransactionCallback<T> action) {
+            return action.doInTransaction(null);
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, Object[][] params) {
+            if (fail) {
+                throw new IllegalStateException("database down");
+            }
+            batches.add(params);
+            return new int[params.length];
+        }
+    }
+}
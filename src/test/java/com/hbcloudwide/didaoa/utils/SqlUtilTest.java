@@ -0,0 +1,125 @@
+package com.hbcloudwide.didaoa.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SqlUtilTest {
+
+    @Test
+    public void splitInsertValues() {
+        String[] parts = SqlUtil.splitInsertValues("INSERT INTO user (user_name, pass_word) VALUES (?, ?)");
+        assertArrayEquals(new String[] { "INSERT INTO user (user_name, pass_word) VALUES ", "(?, ?)", "" }, parts);
+        assertEquals("INSERT INTO user (user_name, pass_word) VALUES (?, ?),(?, ?),(?, ?)",
+                SqlUtil.multiRowInsert(parts, 3));
+    }
+
+    @Test
+    public void splitInsertValuesKeepsTail() {
+        String[] parts = SqlUtil.splitInsertValues(
+                "insert into user values (?, now(), 'a)b') on duplicate key update user_name = values(user_name)");
+        assertEquals("(?, now(), 'a)b')", parts[1]);
+        assertEquals(" on duplicate key update user_name = values(user_name)", parts[2]);
+    }
+
+    @Test
+    public void splitInsertValuesRejectsOtherStatements() {
+        assertNull(SqlUtil.splitInsertValues("UPDATE user SET user_name = ? WHERE id = ?"));
+        assertNull(SqlUtil.splitInsertValues("INSERT INTO user (user_name) SELECT user_name FROM old_user"));
+        assertNull(SqlUtil.splitInsertValues("INSERT INTO user (user_name) VALUES (?), (?)"));
+    }
+
+    @Test
+    public void splitInsertValuesRejectsPlaceholdersOutsideValues() {
+        assertNull(SqlUtil.splitInsertValues("INSERT INTO t (a, b) VALUES (?, ?) ON DUPLICATE KEY UPDATE b = b + ?"));
+        String[] parts = SqlUtil.splitInsertValues("INSERT INTO t (a, b) VALUES (?, ?) ON DUPLICATE KEY UPDATE b = b + VALUES(b)");
+        assertEquals(" ON DUPLICATE KEY UPDATE b = b + VALUES(b)", parts[2]);
+    }
+
+    @Test
+    public void splitInsertValuesOnlyAfterColumnList() {
+        assertNull(SqlUtil.splitInsertValues("INSERT INTO user (id, login_count) SELECT id, 1 FROM login"
+                + " ON DUPLICATE KEY UPDATE login_count = login_count + VALUES(login_count)"));
+        assertNull(SqlUtil.splitInsertValues("INSERT INTO user SET user_name = ?, pass_word = VALUES(pass_word)"));
+        String[] parts = SqlUtil.splitInsertValues("INSERT IGNORE INTO didaoa.`user` PARTITION (p0) VALUES (?, ?)");
+        assertEquals("INSERT IGNORE INTO didaoa.`user` PARTITION (p0) VALUES ", parts[0]);
+        assertEquals("(?, ?)", parts[1]);
+    }
+
+    @Test
+    public void countPlaceholders() {
+        assertEquals(2, SqlUtil.countPlaceholders("select * from user where a = ? and b = '?' /* ? */ and c = ?"));
+    }
+
+    @Test
+    public void expandPlaceholder() {
+        String sql = "SELECT * FROM user WHERE note <> '?' AND id IN (?)";
+        int pos = SqlUtil.indexOfPlaceholder(sql, 0);
+        assertEquals("SELECT * FROM user WHERE note <> '?' AND id IN (?, ?, ?)", SqlUtil.expandPlaceholder(sql, pos, 3));
+        assertEquals(sql, SqlUtil.expandPlaceholder(sql, pos, 1));
+        assertEquals(-1, SqlUtil.indexOfPlaceholder(sql, 1));
+    }
+
+    @Test
+    public void parseNamedParameters() {
+        List<String> names = new ArrayList<String>();
+        assertEquals("SELECT * FROM user WHERE id IN (?) AND user_name = ? AND note <> ':x' AND id <> ? -- :y\n",
+                SqlUtil.parseNamedParameters(
+                        "SELECT * FROM user WHERE id IN (:ids) AND user_name = :name AND note <> ':x' AND id <> :ids -- :y\n", names));
+        assertEquals(Arrays.asList("ids", "name", "ids"), names);
+        names.clear();
+        assertEquals("SET @a := ?", SqlUtil.parseNamedParameters("SET @a := :a", names));
+        assertEquals(Collections.singletonList("a"), names);
+    }
+
+    @Test
+    public void bucketSize() {
+        assertEquals(1, SqlUtil.bucketSize(0, 1024));
+        assertEquals(1, SqlUtil.bucketSize(1, 1024));
+        assertEquals(2, SqlUtil.bucketSize(2, 1024));
+        assertEquals(4, SqlUtil.bucketSize(3, 1024));
+        assertEquals(8, SqlUtil.bucketSize(8, 1024));
+        assertEquals(1024, SqlUtil.bucketSize(600, 1024));
+        assertEquals(2048, SqlUtil.bucketSize(1025, 1024));
+        assertEquals(3072, SqlUtil.bucketSize(2049, 1024));
+    }
+
+    @Test
+    public void tables() {
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("user", "dept")),
+                SqlUtil.tables("SELECT * FROM `didaoa`.`user` u, dept AS d WHERE u.dept_id = d.id AND note = 'from x'"));
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("user", "role", "user_role")),
+                SqlUtil.tables("select * from user join role on 1=1 where id in (select user_id from user_role)"));
+        assertEquals(Collections.singleton("user"), SqlUtil.tables("UPDATE user SET user_name = ? WHERE id = ?"));
+        assertEquals(Collections.singleton("user"), SqlUtil.tables("insert into user (user_name) values (?)"));
+        assertEquals(Collections.singleton("user"), SqlUtil.tables("DELETE FROM user"));
+        assertTrue(SqlUtil.tables("SELECT 1").isEmpty());
+    }
+
+    @Test
+    public void indexOfTopLevelKeyword() {
+        String sql = "SELECT * FROM user WHERE id IN (SELECT id FROM t WHERE x = 1) AND note = 'where'";
+        assertEquals(19, SqlUtil.indexOfTopLevelKeyword(sql, "WHERE", 0));
+        assertEquals(-1, SqlUtil.indexOfTopLevelKeyword("SELECT (SELECT 1 FROM t WHERE a = 1) FROM user", "where", 0));
+    }
+
+    @Test
+    public void fingerprint() {
+        assertEquals("SELECT * FROM user WHERE id IN (?...) AND user_name = ? LIMIT ?",
+                SqlUtil.fingerprint("SELECT *  FROM user\n WHERE id IN (1, 2,3) /* hint */ AND user_name = 'a''b' LIMIT 10"));
+        assertEquals(SqlUtil.fingerprint("SELECT * FROM user WHERE id IN (?, ?)"),
+                SqlUtil.fingerprint("SELECT * FROM user WHERE id IN (?,?,?,?)"));
+        assertEquals("INSERT INTO user (user_name, pass_word) VALUES (?, ?),...",
+                SqlUtil.fingerprint("INSERT INTO user (user_name, pass_word) VALUES (?, ?),(?, ?),(?, ?)"));
+        assertEquals("SELECT t1.c2 FROM `t3` t1", SqlUtil.fingerprint("SELECT t1.c2 FROM `t3` t1"));
+    }
+}